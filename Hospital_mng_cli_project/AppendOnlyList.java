@@ -0,0 +1,69 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// ===================
+// AppendOnlyList - list that only grows at the end
+// ===================
+// The record lists never remove or replace an element, so readers can use
+// them without a lock while one writer appends: an element is stored before
+// the volatile size that makes it visible, and readers read the size
+// before the array. Iteration sees the elements that were present when it
+// started. Callers must make sure appends do not overlap.
+class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+    private Object[] data;
+    private volatile int size;
+
+    public AppendOnlyList() {
+        this(16);
+    }
+
+    public AppendOnlyList(int capacity) {
+        data = new Object[Math.max(capacity, 4)];
+    }
+
+    @Override
+    public boolean add(T value) {
+        int n = size;
+        if (n == data.length) data = Arrays.copyOf(data, n << 1);
+        data[n] = value;
+        size = n + 1;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int i) {
+        int n = size;
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + n);
+        return (T) data[i];
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Iterator<T> iterator() {
+        int n = size;
+        Object[] snapshot = data;
+        return new Iterator<T>() {
+            private int i;
+
+            public boolean hasNext() { return i < n; }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (i >= n) throw new NoSuchElementException();
+                return (T) snapshot[i++];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        int n = size;
+        return Arrays.copyOf(data, n);
+    }
+}
@@ -0,0 +1,50 @@
+// ===================
+// Appointment class
+// ===================
+// A view of one record of an AppointmentStore, made on demand like Patient
+class Appointment {
+    private final AppointmentStore store;
+    private final int index;
+
+    Appointment(AppointmentStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    // Position in the appointment list, as shown by the menus
+    public int getIndex() { return index; }
+    public int getDoctorId() { return store.getDoctorId(index); }
+    public int getPatientId() { return store.getPatientId(index); }
+    public Doctor getDoctor() { return store.getDoctor(index); }
+    public Patient getPatient() { return store.getPatient(index); }
+    // Date as typed, which is what the CSV files and journal keep
+    public String getDate() { return store.getDate(index); }
+    public StringBuilder appendDate(StringBuilder sb) { return store.appendDate(index, sb); }
+    // Epoch day of the date, or Dates.UNKNOWN if it did not parse
+    public int getDay() { return store.getDay(index); }
+    // Half-hour slot of the day (see SlotBook), or SlotBook.NONE if untimed
+    public int getSlot() { return store.getSlot(index); }
+    // "HH:mm", or "" if untimed
+    public String getTime() { return SlotBook.formatTime(getSlot()); }
+    // The date, followed by the time if there is one
+    public String getDateAndTime() { return getSlot() == SlotBook.NONE ? getDate() : getDate() + " " + getTime(); }
+    public boolean isPaid() { return store.isPaid(index); }
+    public void setPaid(boolean paid) { store.setPaid(index, paid); }
+    public double getFee() { return getDoctor().getAppointmentFee(); }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Appointment && ((Appointment) o).store == store && ((Appointment) o).index == index;
+    }
+
+    @Override
+    public int hashCode() { return index; }
+
+    @Override
+    public String toString() {
+        Doctor doctor = getDoctor();
+        return String.format("Date: %-10s | Dr. %-15s | Patient: %-15s | Fee: $%-6.2f | Paid: %-3s",
+                getDateAndTime(), doctor.getName(), getPatient().getName(),
+                doctor.getAppointmentFee(), isPaid() ? "Yes" : "No");
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.function.IntFunction;
+
+// ===================
+// AppointmentStore - appointments as fixed-width records off the heap
+// ===================
+// Each appointment is 16 bytes in direct ByteBuffers of 64K records
+// (1 MiB) each: doctor ID, patient ID, epoch day and an info word with the
+// slot, the paid flag and how the date was typed. Years of history add
+// buffers outside the Java heap instead of objects in it, so the heap and
+// the collector's work stay the same size as it grows; the heap only
+// holds one ByteBuffer per chunk. Direct memory is capped by
+// -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+//
+// A date that Dates cannot rebuild exactly as typed (one that does not
+// parse, or has blanks around it) is kept as a code into a table of such
+// texts in place of the epoch day, and parsed again when asked for.
+//
+// Records are appended and never removed. Readers take no lock and may
+// run alongside one writer: a record is written before the volatile size
+// that makes it visible, and the info word, the one part that changes
+// later, is written and read with release/acquire. Callers must make sure
+// writers do not overlap.
+class AppointmentStore {
+    static final int RECORD_BYTES = 16;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // Field offsets within a record
+    private static final int DOCTOR = 0, PATIENT = 4, DATE = 8, INFO = 12;
+
+    // Info word: slot + 1 (0 = untimed), paid, date kept as text, Dates style
+    private static final int SLOT_MASK = 0xFF;
+    private static final int PAID = 1 << 8;
+    private static final int DATE_TEXT = 1 << 9;
+    private static final int STYLE_SHIFT = 10;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int size;
+    private final SymbolTable dateTexts = new SymbolTable(false);
+    private final IntFunction<Doctor> doctors;
+    private final IntFunction<Patient> patients;
+
+    // doctors and patients find the records an appointment refers to by ID
+    public AppointmentStore(IntFunction<Doctor> doctors, IntFunction<Patient> patients) {
+        this.doctors = doctors;
+        this.patients = patients;
+    }
+
+    // Appends an appointment and returns its index
+    public int add(int doctorId, int patientId, String date, int slot, boolean paid) {
+        int index = size;
+        ByteBuffer[] c = chunks;
+        if (index >>> CHUNK_SHIFT == c.length) {
+            c = Arrays.copyOf(c, c.length + 1);
+            c[c.length - 1] = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES).order(ByteOrder.nativeOrder());
+            chunks = c;
+        }
+        int day = Dates.parse(date);
+        int style = day != Dates.UNKNOWN ? Dates.styleOf(date) : -1;
+        int info = (slot == SlotBook.NONE ? 0 : slot + 1) | (paid ? PAID : 0);
+        if (style < 0) {
+            day = dateTexts.code(date);
+            info |= DATE_TEXT;
+        } else {
+            info |= style << STYLE_SHIFT;
+        }
+        ByteBuffer chunk = c[index >>> CHUNK_SHIFT];
+        int at = offset(index);
+        chunk.putInt(at + DOCTOR, doctorId);
+        chunk.putInt(at + PATIENT, patientId);
+        chunk.putInt(at + DATE, day);
+        INTS.setRelease(chunk, at + INFO, info);
+        size = index + 1;
+        return index;
+    }
+
+    private static int offset(int index) {
+        return (index & (CHUNK_RECORDS - 1)) * RECORD_BYTES;
+    }
+
+    private ByteBuffer chunk(int index) {
+        int n = size;
+        if (index < 0 || index >= n) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + n);
+        return chunks[index >>> CHUNK_SHIFT];
+    }
+
+    private int info(int index) {
+        return (int) INTS.getAcquire(chunk(index), offset(index) + INFO);
+    }
+
+    public int size() { return size; }
+
+    public int getDoctorId(int index) { return chunk(index).getInt(offset(index) + DOCTOR); }
+    public int getPatientId(int index) { return chunk(index).getInt(offset(index) + PATIENT); }
+    public Doctor getDoctor(int index) { return doctors.apply(getDoctorId(index)); }
+    public Patient getPatient(int index) { return patients.apply(getPatientId(index)); }
+
+    public int getDay(int index) {
+        int date = chunk(index).getInt(offset(index) + DATE);
+        return (info(index) & DATE_TEXT) != 0 ? Dates.parse(dateTexts.text(date)) : date;
+    }
+
+    public String getDate(int index) {
+        int info = info(index);
+        int date = chunk(index).getInt(offset(index) + DATE);
+        return (info & DATE_TEXT) != 0 ? dateTexts.text(date) : Dates.format(date, info >>> STYLE_SHIFT);
+    }
+
+    public StringBuilder appendDate(int index, StringBuilder sb) {
+        int info = info(index);
+        int date = chunk(index).getInt(offset(index) + DATE);
+        return (info & DATE_TEXT) != 0 ? sb.append(dateTexts.text(date)) : Dates.appendTo(sb, date, info >>> STYLE_SHIFT);
+    }
+
+    public int getSlot(int index) {
+        int slot = info(index) & SLOT_MASK;
+        return slot == 0 ? SlotBook.NONE : slot - 1;
+    }
+
+    public boolean isPaid(int index) { return (info(index) & PAID) != 0; }
+
+    public void setPaid(int index, boolean paid) {
+        int info = info(index);
+        INTS.setRelease(chunk(index), offset(index) + INFO, paid ? info | PAID : info & ~PAID);
+    }
+
+    // Bytes of direct memory in use
+    public long offHeapBytes() {
+        return (long) chunks.length * CHUNK_RECORDS * RECORD_BYTES;
+    }
+
+    public Appointment view(int index) { return new Appointment(this, index); }
+
+    // The first n records as they are stored, for BinarySnapshot: one
+    // read-only buffer per chunk, limited to its records, in native byte
+    // order, and the dates kept as text in code order. Take it with the
+    // writer's lock held; only the paid flags may change afterwards.
+    static final class Records {
+        final int size;
+        final ByteBuffer[] chunks;
+        final List<String> dateTexts;
+
+        Records(int size, ByteBuffer[] chunks, List<String> dateTexts) {
+            this.size = size;
+            this.chunks = chunks;
+            this.dateTexts = dateTexts;
+        }
+    }
+
+    Records records() {
+        int n = size;
+        ByteBuffer[] c = chunks;
+        ByteBuffer[] out = new ByteBuffer[(n + CHUNK_RECORDS - 1) >>> CHUNK_SHIFT];
+        for (int i = 0; i < out.length; i++) {
+            int records = Math.min(CHUNK_RECORDS, n - (i << CHUNK_SHIFT));
+            out[i] = c[i].asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+            out[i].limit(records * RECORD_BYTES);
+        }
+        List<String> texts = new ArrayList<>(dateTexts.size());
+        for (int code = 0; code < dateTexts.size(); code++) texts.add(dateTexts.text(code));
+        return new Records(n, out, texts);
+    }
+
+    // Fills a chunk's buffer with records in native byte order
+    interface ChunkReader {
+        void read(ByteBuffer records) throws IOException;
+    }
+
+    // Loads n records into this store, which must be empty, a chunk at a
+    // time: reader is handed each chunk limited to the bytes of its
+    // records. dateTexts are the texts their date codes refer to, as
+    // Records gives them.
+    void load(int n, List<String> dateTexts, ChunkReader reader) throws IOException {
+        if (size != 0) throw new IllegalStateException("appointment store is not empty");
+        for (int code = 0; code < dateTexts.size(); code++) {
+            if (this.dateTexts.code(dateTexts.get(code)) != code) throw new IOException("duplicate date text");
+        }
+        ByteBuffer[] c = new ByteBuffer[(n + CHUNK_RECORDS - 1) >>> CHUNK_SHIFT];
+        for (int i = 0; i < c.length; i++) {
+            int records = Math.min(CHUNK_RECORDS, n - (i << CHUNK_SHIFT));
+            c[i] = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES).order(ByteOrder.nativeOrder());
+            ByteBuffer fill = c[i].duplicate();
+            fill.limit(records * RECORD_BYTES);
+            reader.read(fill);
+        }
+        for (int index = 0; index < n; index++) {
+            int info = c[index >>> CHUNK_SHIFT].getInt(offset(index) + INFO);
+            int date = c[index >>> CHUNK_SHIFT].getInt(offset(index) + DATE);
+            if ((info & SLOT_MASK) > SlotBook.SLOTS || (info & DATE_TEXT) != 0 && (date < 0 || date >= dateTexts.size())) {
+                throw new IOException("corrupt appointment record " + index);
+            }
+        }
+        chunks = c;
+        size = n;
+    }
+
+    // The first n records as a list of views
+    public List<Appointment> asList(int n) {
+        return new ViewList(n);
+    }
+
+    // Every record, including records added later
+    public List<Appointment> asList() {
+        return new ViewList(-1);
+    }
+
+    private final class ViewList extends AbstractList<Appointment> implements RandomAccess {
+        private final int fixedSize;
+
+        ViewList(int fixedSize) { this.fixedSize = fixedSize; }
+
+        @Override
+        public Appointment get(int i) {
+            int n = size();
+            if (i < 0 || i >= n) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + n);
+            return view(i);
+        }
+
+        @Override
+        public int size() { return fixedSize >= 0 ? fixedSize : AppointmentStore.this.size; }
+    }
+}
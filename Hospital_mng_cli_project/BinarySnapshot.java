@@ -0,0 +1,367 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// ===================
+// BinarySnapshot - compact snapshot file
+// ===================
+// Patients and appointments are stored the way PatientStore and
+// AppointmentStore hold them, so loading copies whole columns into arrays
+// sized from the header instead of building a record at a time, and the
+// indexes over them are built in bulk. Layout, numbers big-endian unless
+// noted:
+//   header:       magic "HSNP", version, then doctor, patient, staff and
+//                 appointment counts (int each)
+//   doctors:      per doctor: id int, name str, age int, specialization str, fee double
+//   patients:     symbol texts (int count, then strs), then columns of n:
+//                 ids int, ages int, test flags as (n + 63) / 64 longs,
+//                 diseases int (index into the symbol texts), name ends int
+//                 (end of each name in the name bytes), the name bytes
+//                 (UTF-8), then prescriptions as int count and (row int, str)
+//                 for each row that has one
+//   staff:        per member: id int, name str, age int, department str, position str, salary double
+//   appointments: date texts (int count, then strs), then AppointmentStore
+//                 records of 16 bytes, little-endian
+// A str is an int byte length followed by UTF-8 bytes. The file is read
+// and written in 1 MB blocks through a FileChannel. Versions 1 and 2
+// stored patients and appointments a record at a time; they are still
+// read, a record at a time.
+//
+// Loading from this file takes about half as long as from CSV, not a
+// tenth. Reading it is the small part; most of the time goes to what it
+// does not store and the Hospital builds on load: the appointment lists
+// per patient and doctor, the name search index and the fee ledger, and
+// the collections of the heap they fill.
+class BinarySnapshot {
+    private static final int MAGIC = 0x48534E50; // "HSNP"
+    private static final int VERSION = 3;
+    private static final int BLOCK = 1 << 20;
+    private static final boolean SWAP = ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN;
+
+    // Writes to a temp file, forces it to disk and renames it over file.
+    // Disease codes in patients are codes of symbols.
+    public static void write(Path file, SymbolTable symbols, List<Doctor> doctors, PatientStore.Columns patients,
+                             List<Staff> staff, AppointmentStore.Records appointments) throws IOException {
+        Path tmp = Paths.get(file + ".tmp");
+        try (Out out = new Out(tmp)) {
+            int n = patients.size;
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(doctors.size());
+            out.putInt(n);
+            out.putInt(staff.size());
+            out.putInt(appointments.size);
+            for (Doctor d : doctors) {
+                out.putInt(d.getId());
+                out.putString(d.getName());
+                out.putInt(d.getAge());
+                out.putString(d.getSpecialization());
+                out.putDouble(d.getAppointmentFee());
+            }
+
+            int texts = symbols.size();
+            out.putInt(texts);
+            for (int code = 0; code < texts; code++) out.putString(symbols.text(code));
+            out.putInts(patients.ids, n);
+            out.putInts(patients.ages, n);
+            out.putLongs(patients.testBits, (n + 63) >>> 6);
+            out.putInts(patients.diseases, n);
+            out.putInts(patients.nameEnds, n);
+            out.putBytes(patients.nameBytes, n == 0 ? 0 : patients.nameEnds[n - 1]);
+            // Gathered in one pass, as they may change while it runs
+            IntList prescribedRows = new IntList();
+            List<String> prescriptions = new ArrayList<>();
+            for (int row = 0; row < n; row++) {
+                String prescription = patients.prescriptions[row];
+                if (prescription == null) continue;
+                prescribedRows.add(row);
+                prescriptions.add(prescription);
+            }
+            out.putInt(prescriptions.size());
+            for (int i = 0; i < prescriptions.size(); i++) {
+                out.putInt(prescribedRows.get(i));
+                out.putString(prescriptions.get(i));
+            }
+
+            for (Staff s : staff) {
+                out.putInt(s.getId());
+                out.putString(s.getName());
+                out.putInt(s.getAge());
+                out.putString(s.getDepartment());
+                out.putString(s.getPosition());
+                out.putDouble(s.getSalary());
+            }
+
+            out.putInt(appointments.dateTexts.size());
+            for (String date : appointments.dateTexts) out.putString(date);
+            for (ByteBuffer chunk : appointments.chunks) {
+                ByteBuffer records = chunk.duplicate();
+                if (SWAP) records = swapInts(ByteBuffer.allocate(records.remaining()).put(records).flip());
+                out.putBuffer(records);
+            }
+            out.sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Loads every record of file into h, which must be empty
+    public static void read(Path file, Hospital h) throws IOException {
+        try (In in = new In(file)) {
+            if (in.getInt() != MAGIC) throw new IOException("not a hospital snapshot");
+            int version = in.getInt();
+            if (version < 1 || version > VERSION) throw new IOException("unsupported snapshot version " + version);
+            int doctorCount = in.getCount(), patientCount = in.getCount();
+            int staffCount = in.getCount(), appointmentCount = in.getCount();
+            h.presize(doctorCount, patientCount, staffCount);
+            for (int i = 0; i < doctorCount; i++) {
+                h.insertDoctor(new Doctor(h.getSymbols(), in.getInt(), in.getString(), in.getInt(), in.getString(), in.getDouble()));
+            }
+            if (version < 3) {
+                readRecords(in, version, h, patientCount, staffCount, appointmentCount);
+                return;
+            }
+            int[] codes = readSymbols(in, h.getSymbols());
+            h.loadPatients(patientCount, c -> readPatients(in, codes, c));
+            readStaff(in, h, staffCount);
+            int dates = in.getCount();
+            List<String> dateTexts = new ArrayList<>(dates);
+            for (int i = 0; i < dates; i++) dateTexts.add(in.getString());
+            h.loadAppointments(appointmentCount, dateTexts, records -> {
+                in.getBuffer(records);
+                if (SWAP) swapInts(records.flip());
+            });
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt snapshot: " + e, e);
+        }
+    }
+
+    // Codes in symbols of the texts the file lists, by their index there
+    private static int[] readSymbols(In in, SymbolTable symbols) throws IOException {
+        int[] codes = new int[in.getCount()];
+        for (int i = 0; i < codes.length; i++) codes[i] = symbols.code(in.getString());
+        return codes;
+    }
+
+    private static void readPatients(In in, int[] codes, PatientStore.Columns c) throws IOException {
+        int n = c.size;
+        in.getInts(c.ids, n);
+        in.getInts(c.ages, n);
+        in.getLongs(c.testBits, (n + 63) >>> 6);
+        in.getInts(c.diseases, n);
+        for (int row = 0; row < n; row++) c.diseases[row] = codes[c.diseases[row]];
+        in.getInts(c.nameEnds, n);
+        for (int row = 0, end = 0; row < n; row++) {
+            if (c.nameEnds[row] < end) throw new IOException("corrupt snapshot names");
+            end = c.nameEnds[row];
+        }
+        c.nameBytes = new byte[n == 0 ? 0 : c.nameEnds[n - 1]];
+        in.getBytes(c.nameBytes);
+        int prescribed = in.getCount();
+        for (int i = 0; i < prescribed; i++) {
+            int row = in.getInt();
+            if (row < 0 || row >= n) throw new IOException("corrupt snapshot prescriptions");
+            c.prescriptions[row] = in.getString();
+        }
+    }
+
+    private static void readStaff(In in, Hospital h, int staffCount) throws IOException {
+        for (int i = 0; i < staffCount; i++) {
+            h.insertStaff(new Staff(h.getSymbols(), in.getInt(), in.getString(), in.getInt(), in.getString(), in.getString(), in.getDouble()));
+        }
+    }
+
+    // Patients, staff and appointments of a version 1 or 2 file
+    private static void readRecords(In in, int version, Hospital h, int patientCount, int staffCount,
+                                    int appointmentCount) throws IOException {
+        for (int i = 0; i < patientCount; i++) {
+            h.insertPatient(in.getInt(), in.getString(), in.getInt(), in.getString(), in.getByte() != 0, in.getString());
+        }
+        readStaff(in, h, staffCount);
+        for (int i = 0; i < appointmentCount; i++) {
+            Doctor d = h.findDoctor(in.getInt());
+            Patient p = h.findPatient(in.getInt());
+            String date = in.getString();
+            boolean paid = in.getByte() != 0;
+            int slot = version > 1 ? in.getByte() : SlotBook.NONE;
+            if (slot < 0 || slot >= SlotBook.SLOTS) slot = SlotBook.NONE;
+            if (d != null && p != null) h.insertAppointment(d, p, date, slot, paid);
+        }
+    }
+
+    // Reverses the byte order of every int in b, from its position to its
+    // limit; returns b
+    private static ByteBuffer swapInts(ByteBuffer b) {
+        for (int at = b.position(); at + 4 <= b.limit(); at += 4) b.putInt(at, Integer.reverseBytes(b.getInt(at)));
+        return b;
+    }
+
+    private static class Out implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+
+        Out(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void room(int n) throws IOException {
+            if (buf.remaining() < n) drain();
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        void putByte(int v) throws IOException { room(1); buf.put((byte) v); }
+        void putInt(int v) throws IOException { room(4); buf.putInt(v); }
+        void putDouble(double v) throws IOException { room(8); buf.putDouble(v); }
+
+        void putInts(int[] values, int n) throws IOException {
+            for (int off = 0; off < n; ) {
+                room(4);
+                int k = Math.min(n - off, buf.remaining() >>> 2);
+                buf.asIntBuffer().put(values, off, k);
+                buf.position(buf.position() + (k << 2));
+                off += k;
+            }
+        }
+
+        void putLongs(long[] values, int n) throws IOException {
+            for (int off = 0; off < n; ) {
+                room(8);
+                int k = Math.min(n - off, buf.remaining() >>> 3);
+                buf.asLongBuffer().put(values, off, k);
+                buf.position(buf.position() + (k << 3));
+                off += k;
+            }
+        }
+
+        void putBytes(byte[] bytes, int n) throws IOException {
+            for (int off = 0; off < n; ) {
+                if (!buf.hasRemaining()) drain();
+                int k = Math.min(buf.remaining(), n - off);
+                buf.put(bytes, off, k);
+                off += k;
+            }
+        }
+
+        void putBuffer(ByteBuffer src) throws IOException {
+            drain();
+            while (src.hasRemaining()) channel.write(src);
+        }
+
+        void putString(String s) throws IOException {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes, bytes.length);
+        }
+
+        void sync() throws IOException {
+            drain();
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static class In implements Closeable {
+        private final FileChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+
+        In(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buf.flip();
+        }
+
+        // Makes at least n bytes available in buf
+        private void need(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            if (n > buf.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(n, buf.capacity() << 1));
+                bigger.put(buf);
+                buf = bigger;
+            } else {
+                buf.compact();
+            }
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) throw new EOFException("snapshot is truncated");
+            }
+            buf.flip();
+        }
+
+        byte getByte() throws IOException { need(1); return buf.get(); }
+        int getInt() throws IOException { need(4); return buf.getInt(); }
+        double getDouble() throws IOException { need(8); return buf.getDouble(); }
+
+        void getInts(int[] values, int n) throws IOException {
+            for (int off = 0; off < n; ) {
+                need(4);
+                int k = Math.min(n - off, buf.remaining() >>> 2);
+                buf.asIntBuffer().get(values, off, k);
+                buf.position(buf.position() + (k << 2));
+                off += k;
+            }
+        }
+
+        void getLongs(long[] values, int n) throws IOException {
+            for (int off = 0; off < n; ) {
+                need(8);
+                int k = Math.min(n - off, buf.remaining() >>> 3);
+                buf.asLongBuffer().get(values, off, k);
+                buf.position(buf.position() + (k << 3));
+                off += k;
+            }
+        }
+
+        void getBytes(byte[] bytes) throws IOException {
+            for (int off = 0; off < bytes.length; ) {
+                need(1);
+                int k = Math.min(buf.remaining(), bytes.length - off);
+                buf.get(bytes, off, k);
+                off += k;
+            }
+        }
+
+        // Fills dst from its position to its limit
+        void getBuffer(ByteBuffer dst) throws IOException {
+            while (dst.hasRemaining()) {
+                if (buf.hasRemaining()) {
+                    int k = Math.min(buf.remaining(), dst.remaining());
+                    dst.put(buf.slice().limit(k));
+                    buf.position(buf.position() + k);
+                } else if (channel.read(dst) < 0) {
+                    throw new EOFException("snapshot is truncated");
+                }
+            }
+        }
+
+        int getCount() throws IOException {
+            int n = getInt();
+            if (n < 0) throw new IOException("corrupt snapshot header");
+            return n;
+        }
+
+        String getString() throws IOException {
+            int len = getInt();
+            if (len < 0) throw new IOException("corrupt snapshot string");
+            need(len);
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            return s;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// ===================
+// BulkImporter - streams an external CSV file into the Hospital
+// ===================
+// A parser thread reads the file, validates each row and passes batches of
+// valid rows through a small bounded queue, so it runs ahead of insertion
+// by at most QUEUE_BATCHES batches. The calling thread assigns IDs to each
+// batch and appends it to the Hospital in one step (see importPatients).
+// Rejected rows go to <file>.rejected.csv with the line they start on in
+// the file, the reason and their fields; nothing is printed per row.
+//
+// Columns are found by header name, case-insensitively, so files exported
+// from this system import as they are (their ID column is ignored):
+//   patients  Name, Age, Disease [, TestRequired, Prescription]
+//   doctors   Name, Age, Specialization, Fee
+//   staff     Name, Age, Department, Position, Salary
+class BulkImporter {
+    private static final int BATCH_ROWS = 4096;
+    private static final int QUEUE_BATCHES = 4;
+    private static final int MAX_AGE = 150;
+
+    private enum Kind {
+        PATIENTS("patients", new String[] { "name", "age", "disease" }, new String[] { "testrequired", "prescription" }),
+        DOCTORS("doctors", new String[] { "name", "age", "specialization", "fee" }, new String[0]),
+        STAFF("staff", new String[] { "name", "age", "department", "position", "salary" }, new String[0]);
+
+        final String label;
+        final String[] required;
+        final String[] optional;
+
+        Kind(String label, String[] required, String[] optional) {
+            this.label = label;
+            this.required = required;
+            this.optional = optional;
+        }
+    }
+
+    // One validated row; text2 and amount are only used by some kinds
+    private static class Row {
+        String name;
+        int age;
+        String text1;
+        String text2;
+        double amount;
+        boolean flag;
+    }
+
+    private static final List<Row> END = new ArrayList<>();
+
+    private final Hospital hospital;
+    private final Kind kind;
+    private final Path file;
+    private final Path rejectFile;
+    private final BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+
+    // Written by the parser, read after it has finished
+    private long rows, rejected;
+    private volatile Exception parseError;
+
+    private BulkImporter(Hospital hospital, Kind kind, Path file) {
+        this.hospital = hospital;
+        this.kind = kind;
+        this.file = file;
+        this.rejectFile = Paths.get(file + ".rejected.csv");
+    }
+
+    public static void importFile(Hospital hospital, String kindName, String file) {
+        Kind kind = null;
+        for (Kind k : Kind.values()) {
+            if (k.label.equalsIgnoreCase(kindName.trim())) kind = k;
+        }
+        if (kind == null) {
+            System.out.println("❌ Unknown record type: " + kindName);
+            return;
+        }
+        Path path = Paths.get(file.trim());
+        if (!Files.isRegularFile(path)) {
+            System.out.println("❌ File not found: " + file);
+            return;
+        }
+        new BulkImporter(hospital, kind, path).run();
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        Thread parser = new Thread(this::parse, "import-parser");
+        parser.setDaemon(true);
+        parser.start();
+        long imported = 0;
+        try {
+            while (true) {
+                List<Row> batch = queue.take();
+                if (batch == END) break;
+                if (!insert(batch)) {
+                    stop(parser, "❌ Import stopped after " + imported + " " + kind.label + ": the journal could not be written");
+                    return;
+                }
+                imported += batch.size();
+            }
+            parser.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            parser.interrupt();
+            System.out.println("❌ Import interrupted after " + imported + " " + kind.label);
+            return;
+        } catch (RuntimeException e) {
+            stop(parser, "❌ Import stopped after " + imported + " " + kind.label + ": " + e);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (parseError != null) {
+            System.out.println("❌ Import stopped after " + imported + " " + kind.label + ": " + parseError.getMessage());
+        } else {
+            System.out.printf("✅ Imported %d %s in %.2f s (%.0f rows/s)%n", imported, kind.label, seconds,
+                    imported / Math.max(seconds, 1e-9));
+        }
+        if (rejected > 0) System.out.println("⚠ " + rejected + " rows rejected, see " + rejectFile);
+    }
+
+    // Ends the import early: the parser is interrupted, so it does not
+    // block on a queue nobody takes from, and waited for
+    private void stop(Thread parser, String message) {
+        parser.interrupt();
+        try {
+            parser.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(message);
+    }
+
+    // Assigns a block of IDs to the batch and appends it; false if the
+    // journal could not be written
+    private boolean insert(List<Row> batch) {
+        switch (kind) {
+            case PATIENTS: {
+                int id = hospital.patientCounter.getAndAdd(batch.size());
+                PatientStore.Rows out = new PatientStore.Rows(hospital.getSymbols());
+                for (Row r : batch) out.add(id++, r.name, r.age, r.text1, r.flag, r.text2);
+                return hospital.importPatients(out);
+            }
+            case DOCTORS: {
+                int id = hospital.doctorCounter.getAndAdd(batch.size());
+                List<Doctor> out = new ArrayList<>(batch.size());
+                for (Row r : batch) out.add(new Doctor(hospital.getSymbols(), id++, r.name, r.age, r.text1, r.amount));
+                return hospital.importDoctors(out);
+            }
+            case STAFF: {
+                int id = hospital.staffCounter.getAndAdd(batch.size());
+                List<Staff> out = new ArrayList<>(batch.size());
+                for (Row r : batch) out.add(new Staff(hospital.getSymbols(), id++, r.name, r.age, r.text1, r.text2, r.amount));
+                return hospital.importStaff(out);
+            }
+            default:
+                throw new IllegalStateException("Unknown record type: " + kind);
+        }
+    }
+
+    // Parser thread: reads and validates rows, queues them in batches and
+    // always finishes with END
+    private void parse() {
+        CsvWriter rejects = null;
+        try (CsvReader in = new CsvReader(file, false)) {
+            if (!in.next()) return;
+            int[] columns = columns(in);
+            List<Row> batch = new ArrayList<>(BATCH_ROWS);
+            while (in.next()) {
+                if (in.isBlank()) continue;
+                rows++;
+                Row row = new Row();
+                String reason = validate(in, columns, row);
+                if (reason != null) {
+                    if (rejects == null) rejects = openRejects();
+                    rejected++;
+                    rejects.field(in.lineNumber()).field(reason);
+                    for (int i = 0; i < in.fieldCount(); i++) rejects.field(in.getString(i));
+                    rejects.endRecord();
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == BATCH_ROWS) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_ROWS);
+                }
+            }
+            if (!batch.isEmpty()) queue.put(batch);
+        } catch (IOException | RuntimeException e) {
+            parseError = e;
+        } catch (InterruptedException e) {
+            // Stopped by the importer; keeps the flag so putEnd does not wait
+            Thread.currentThread().interrupt();
+        } finally {
+            if (rejects != null) {
+                try {
+                    rejects.close();
+                } catch (IOException e) {
+                    System.out.println("❌ Error writing " + rejectFile + ": " + e.getMessage());
+                }
+            }
+            putEnd();
+        }
+    }
+
+    private void putEnd() {
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // the importer is gone
+        }
+    }
+
+    private CsvWriter openRejects() throws IOException {
+        CsvWriter w = new CsvWriter(FileChannel.open(rejectFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        w.header("Line", "Reason", "Fields");
+        return w;
+    }
+
+    // Header positions of the required columns followed by the optional
+    // ones (-1 when missing)
+    private int[] columns(CsvReader header) {
+        int[] columns = new int[kind.required.length + kind.optional.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < header.fieldCount(); i++) {
+            String name = header.getString(i).trim().toLowerCase(Locale.ROOT);
+            for (int c = 0; c < columns.length; c++) {
+                String wanted = c < kind.required.length ? kind.required[c] : kind.optional[c - kind.required.length];
+                if (name.equals(wanted) && columns[c] < 0) columns[c] = i;
+            }
+        }
+        for (int c = 0; c < kind.required.length; c++) {
+            if (columns[c] < 0) {
+                throw new IllegalArgumentException("missing column " + kind.required[c] + " in the header of " + file);
+            }
+        }
+        return columns;
+    }
+
+    // Fills row from the current record; returns why it is rejected, or null
+    private String validate(CsvReader in, int[] columns, Row row) {
+        for (int c = 0; c < kind.required.length; c++) {
+            if (columns[c] >= in.fieldCount()) return "missing " + kind.required[c];
+        }
+        row.name = in.getString(columns[0]).trim();
+        if (row.name.isEmpty()) return "empty name";
+        try {
+            row.age = in.getInt(columns[1]);
+        } catch (NumberFormatException e) {
+            return "age is not a number";
+        }
+        if (row.age < 0 || row.age > MAX_AGE) return "age out of range";
+        row.text1 = in.getString(columns[2]).trim();
+        if (row.text1.isEmpty()) return "empty " + kind.required[2];
+
+        switch (kind) {
+            case PATIENTS: {
+                int test = columns[3], prescription = columns[4];
+                if (test >= 0 && test < in.fieldCount()) {
+                    String value = in.getString(test).trim();
+                    if (value.equalsIgnoreCase("true")) {
+                        row.flag = true;
+                    } else if (!value.isEmpty() && !value.equalsIgnoreCase("false")) {
+                        return "testrequired is not true or false";
+                    }
+                }
+                if (prescription >= 0 && prescription < in.fieldCount()) row.text2 = in.getString(prescription);
+                return null;
+            }
+            case DOCTORS:
+                return amount(in, columns[3], row);
+            case STAFF:
+                row.text2 = in.getString(columns[3]).trim();
+                if (row.text2.isEmpty()) return "empty position";
+                return amount(in, columns[4], row);
+            default:
+                return null;
+        }
+    }
+
+    private String amount(CsvReader in, int column, Row row) {
+        String name = kind.required[kind.required.length - 1];
+        try {
+            row.amount = in.getDouble(column);
+        } catch (NumberFormatException e) {
+            return name + " is not a number";
+        }
+        if (!(row.amount >= 0) || Double.isInfinite(row.amount)) return name + " out of range";
+        return null;
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// ===================
+// Checkpointer - background snapshots
+// ===================
+// Calls Hospital.checkpoint on a daemon thread every interval, skipping
+// rounds where nothing changed, and keeps timings for the status screen.
+class Checkpointer {
+    private final Hospital hospital;
+    private final long intervalSeconds;
+    private final long maxMillis;
+    private ScheduledExecutorService timer;
+
+    private long checkpoints, failures, slow;
+    private long lastMillis, longestMillis;
+    private long lastFinished;
+    private String lastError;
+
+    public Checkpointer(Hospital hospital, long intervalSeconds, long maxMillis) {
+        this.hospital = hospital;
+        this.intervalSeconds = intervalSeconds;
+        this.maxMillis = maxMillis;
+    }
+
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpointer");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::run, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        try {
+            if (!hospital.checkpoint(false)) return;
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            synchronized (this) {
+                checkpoints++;
+                lastMillis = ms;
+                longestMillis = Math.max(longestMillis, ms);
+                lastFinished = System.currentTimeMillis();
+                if (ms > maxMillis) slow++;
+            }
+            if (ms > maxMillis) {
+                System.err.println("⚠ Checkpoint took " + ms + " ms (limit " + maxMillis + " ms)");
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                failures++;
+                lastError = e.getMessage();
+            }
+            System.err.println("❌ Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    // Waits up to maxMillis for a running checkpoint to finish
+    public void stop() {
+        timer.shutdown();
+        try {
+            timer.awaitTermination(maxMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized String status() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Interval: ").append(intervalSeconds).append(" s | Limit: ").append(maxMillis).append(" ms\n");
+        sb.append("Checkpoints: ").append(checkpoints).append(" | Over limit: ").append(slow)
+                .append(" | Failures: ").append(failures).append('\n');
+        sb.append("Last: ").append(lastMillis).append(" ms | Longest: ").append(longestMillis).append(" ms");
+        if (lastFinished > 0) sb.append(" | Finished: ").append(new Date(lastFinished));
+        if (lastError != null) sb.append("\nLast error: ").append(lastError);
+        return sb.toString();
+    }
+}
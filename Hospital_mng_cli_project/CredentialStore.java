@@ -0,0 +1,125 @@
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.*;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// ===================
+// CredentialStore - salted password hashes by username
+// ===================
+// Each account keeps a random salt and a PBKDF2-HMAC-SHA256 hash of its
+// password, never the password. Accounts are found by username in a hash
+// map, and hashes are compared in constant time. A username that does not
+// exist is still hashed against a dummy account, so a failed login takes
+// as long whether or not the name exists.
+//
+// Hashing is deliberately slow, so it runs on a small pool of its own
+// with a bounded queue: a burst of logins waits there (or is turned away
+// with RejectedExecutionException when the queue is full) instead of
+// taking every CPU from the threads serving sessions.
+//
+// Stored form: pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>
+class CredentialStore<T> implements AutoCloseable {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final class Account<T> {
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+        final T principal;
+
+        Account(int iterations, byte[] salt, byte[] hash, T principal) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+            this.principal = principal;
+        }
+    }
+
+    private final Map<String, Account<T>> accounts = new ConcurrentHashMap<>();
+    private final int iterations;
+    private final Account<T> dummy;
+    private final ThreadPoolExecutor pool;
+    private final SecureRandom random = new SecureRandom();
+
+    // New passwords are hashed with the given iterations on up to threads
+    // threads; at most queue logins wait for one
+    public CredentialStore(int iterations, int threads, int queue) {
+        this.iterations = iterations;
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread t = new Thread(r, "password-hash");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        this.dummy = new Account<>(iterations, salt, new byte[HASH_BITS / 8], null);
+    }
+
+    // Adds or replaces an account, hashing password on the calling thread
+    public void add(String username, String password, T principal) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        accounts.put(username, new Account<>(iterations, salt, hash(password, salt, iterations), principal));
+    }
+
+    // Adds or replaces an account from its stored form (see encode)
+    public void addEncoded(String username, String encoded, T principal) {
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(PREFIX)) {
+            throw new IllegalArgumentException("Not a " + PREFIX + " hash: " + encoded);
+        }
+        Base64.Decoder b64 = Base64.getDecoder();
+        accounts.put(username, new Account<>(Integer.parseInt(parts[1]), b64.decode(parts[2]), b64.decode(parts[3]), principal));
+    }
+
+    // Stored form of a new hash of password
+    public String encode(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(hash(password, salt, iterations));
+    }
+
+    // The account's principal if the password matches, otherwise null.
+    // Waits for the hashing pool; throws RejectedExecutionException if its
+    // queue is full.
+    public T verify(String username, String password) throws InterruptedException {
+        Account<T> account = username == null ? null : accounts.get(username);
+        Account<T> checked = account != null ? account : dummy;
+        Future<Boolean> match = pool.submit(() ->
+                MessageDigest.isEqual(hash(password, checked.salt, checked.iterations), checked.hash));
+        try {
+            return match.get() && account != null ? account.principal : null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static byte[] hash(String password, byte[] salt, int iterations) {
+        char[] chars = password == null ? new char[0] : password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
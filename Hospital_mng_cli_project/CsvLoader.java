@@ -0,0 +1,198 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// ===================
+// CsvLoader - reads the four CSV files into a Hospital
+// ===================
+// doctors.csv, patients.csv and staff.csv do not depend on each other, so
+// with more than one thread they are read at the same time, and any file
+// bigger than CHUNK_BYTES is cut at line starts into chunks that are parsed
+// on separate threads. Chunk results are put back together in file order,
+// so the loaded Hospital is identical to a single-threaded load.
+// Appointment rows are parsed alongside the other files but only resolved
+// against doctors and patients in a final join phase, once those are indexed.
+class CsvLoader {
+    private static final long CHUNK_BYTES = 4L << 20;
+
+    private final int threads;
+    private final boolean mapped;
+
+    public CsvLoader(int threads, boolean mapped) {
+        this.threads = Math.max(1, threads);
+        this.mapped = mapped;
+    }
+
+    private interface ChunkParser<T> {
+        T parse(CsvReader in, boolean firstChunk, SymbolTable symbols) throws IOException;
+    }
+
+    // Appointment rows as read from the file, before doctor/patient lookup
+    private static class AppointmentRows {
+        final IntList doctorIds = new IntList(1024);
+        final IntList patientIds = new IntList(1024);
+        final List<String> dates = new ArrayList<>(1024);
+        final BitSet paid = new BitSet();
+        final IntList slots = new IntList(1024);
+    }
+
+    public void loadInto(Hospital h) {
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-loader");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        try {
+            SymbolTable symbols = h.getSymbols();
+            List<Future<List<Doctor>>> doctors = submit(pool, "doctors.csv", symbols, CsvLoader::parseDoctors);
+            List<Future<PatientStore.Rows>> patients = submit(pool, "patients.csv", symbols, CsvLoader::parsePatients);
+            List<Future<List<Staff>>> staff = submit(pool, "staff.csv", symbols, CsvLoader::parseStaff);
+            List<Future<AppointmentRows>> appointments = submit(pool, "appointments.csv", symbols, CsvLoader::parseAppointments);
+
+            for (List<Doctor> chunk : join("doctors", doctors)) {
+                for (Doctor d : chunk) h.insertDoctor(d);
+            }
+            for (PatientStore.Rows chunk : join("patients", patients)) h.insertPatients(chunk);
+            for (List<Staff> chunk : join("staff", staff)) {
+                for (Staff s : chunk) h.insertStaff(s);
+            }
+
+            // Join phase: resolve appointment references in file order
+            for (AppointmentRows rows : join("appointments", appointments)) {
+                for (int i = 0; i < rows.doctorIds.size(); i++) {
+                    Doctor d = h.findDoctor(rows.doctorIds.get(i));
+                    Patient p = h.findPatient(rows.patientIds.get(i));
+                    if (d != null && p != null) {
+                        h.insertAppointment(d, p, rows.dates.get(i), rows.slots.get(i), rows.paid.get(i));
+                    }
+                }
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+    }
+
+    // Splits file into chunks and parses each one on the pool, or inline
+    // when running single-threaded. A missing file yields no chunks.
+    // Texts are encoded into symbols, the table of the Hospital loaded.
+    private <T> List<Future<T>> submit(ExecutorService pool, String file, SymbolTable symbols, ChunkParser<T> parser) {
+        List<Future<T>> futures = new ArrayList<>();
+        Path path = Paths.get(file);
+        if (!Files.isRegularFile(path)) return futures;
+        long[] bounds;
+        try {
+            bounds = threads > 1 ? CsvReader.split(path, threads, CHUNK_BYTES) : new long[] { 0, Long.MAX_VALUE };
+        } catch (IOException e) {
+            futures.add(CompletableFuture.failedFuture(e));
+            return futures;
+        }
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long start = bounds[i], end = bounds[i + 1];
+            boolean first = i == 0;
+            FutureTask<T> task = new FutureTask<>(() -> {
+                try (CsvReader in = new CsvReader(path, mapped, start, end)) {
+                    return parser.parse(in, first, symbols);
+                }
+            });
+            if (pool != null) pool.execute(task); else task.run();
+            futures.add(task);
+        }
+        return futures;
+    }
+
+    // Waits for every chunk of one file; on failure the file is reported and skipped
+    private static <T> List<T> join(String what, List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> f : futures) results.add(f.get());
+        } catch (ExecutionException e) {
+            System.out.println("❌ Error loading " + what + ": " + e.getCause().getMessage());
+            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("❌ Loading " + what + " was interrupted");
+            return Collections.emptyList();
+        }
+        return results;
+    }
+
+    // ---------------- Row parsers ----------------
+    // Blank rows, short rows and rows with bad numbers are skipped, and the
+    // first chunk of each file starts with the header line.
+
+    private static List<Doctor> parseDoctors(CsvReader in, boolean firstChunk, SymbolTable symbols) throws IOException {
+        List<Doctor> out = new ArrayList<>();
+        if (firstChunk && !in.next()) return out;
+        while (in.next()) {
+            if (in.isBlank() || in.fieldCount() < 5) continue;
+            try {
+                int id = in.getInt(0);
+                String name = in.getString(1);
+                int age = in.getInt(2);
+                String spec = in.getString(3);
+                double fee = in.getDouble(4);
+                out.add(new Doctor(symbols, id, name, age, spec, fee));
+            } catch (NumberFormatException ignored) {}
+        }
+        return out;
+    }
+
+    private static PatientStore.Rows parsePatients(CsvReader in, boolean firstChunk, SymbolTable symbols) throws IOException {
+        PatientStore.Rows out = new PatientStore.Rows(symbols);
+        if (firstChunk && !in.next()) return out;
+        while (in.next()) {
+            if (in.isBlank() || in.fieldCount() < 6) continue;
+            try {
+                int id = in.getInt(0);
+                String name = in.getString(1);
+                int age = in.getInt(2);
+                String disease = in.getString(3);
+                boolean testReq = in.getBoolean(4);
+                String prescription = in.getString(5);
+                out.add(id, name, age, disease, testReq, prescription);
+            } catch (NumberFormatException ignored) {}
+        }
+        return out;
+    }
+
+    private static List<Staff> parseStaff(CsvReader in, boolean firstChunk, SymbolTable symbols) throws IOException {
+        List<Staff> out = new ArrayList<>();
+        if (firstChunk && !in.next()) return out;
+        while (in.next()) {
+            if (in.isBlank() || in.fieldCount() < 6) continue;
+            try {
+                int id = in.getInt(0);
+                String name = in.getString(1);
+                int age = in.getInt(2);
+                String dept = in.getString(3);
+                String pos = in.getString(4);
+                double sal = in.getDouble(5);
+                out.add(new Staff(symbols, id, name, age, dept, pos, sal));
+            } catch (NumberFormatException ignored) {}
+        }
+        return out;
+    }
+
+    private static AppointmentRows parseAppointments(CsvReader in, boolean firstChunk, SymbolTable symbols) throws IOException {
+        AppointmentRows out = new AppointmentRows();
+        if (firstChunk && !in.next()) return out;
+        while (in.next()) {
+            if (in.isBlank() || in.fieldCount() < 4) continue;
+            try {
+                int docId = in.getInt(0);
+                int patId = in.getInt(1);
+                String date = in.getString(2);
+                boolean paid = in.getBoolean(3);
+                // Time column is optional (files from before slots lack it)
+                int slot = in.fieldCount() > 4 ? SlotBook.parseTime(in.getString(4)) : SlotBook.NONE;
+                if (paid) out.paid.set(out.dates.size());
+                out.doctorIds.add(docId);
+                out.patientIds.add(patId);
+                out.dates.add(date);
+                out.slots.add(slot);
+            } catch (NumberFormatException ignored) {}
+        }
+        return out;
+    }
+}
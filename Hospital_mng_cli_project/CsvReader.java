@@ -0,0 +1,367 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// ===================
+// CsvReader - streaming CSV reader on NIO
+// ===================
+// Reads a file through a FileChannel (or a memory-mapped window of it) into
+// one reusable byte buffer and tokenizes each record in a single pass. The
+// reader only records where each field starts and ends; numbers are parsed
+// straight from the bytes and a String is created only when a text field is
+// asked for, so reading a row allocates nothing by itself.
+//
+// Quoting: a quote toggles quoted mode and "" inside quotes is a literal
+// quote. Commas separate fields and \n, \r\n or \r end a record only
+// outside quotes, so quoted fields may contain newlines.
+//
+// Each record knows the line it starts on (lineNumber), counting every
+// line end, including blank lines and those inside quoted fields.
+//
+// A reader can also be limited to a byte range of the file; split() picks
+// range boundaries at record starts so several readers can parse one file
+// in parallel.
+class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MAP_WINDOW = 1L << 28;
+
+    private final FileChannel channel;
+    private final boolean mapped;
+    private long filePos;
+    private final long endPos;
+
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos, limit;
+    private boolean eof;
+
+    // Current line, as offsets into buf
+    private int lineStart, lineEnd;
+    // Line the current record starts on, the line the next one starts on,
+    // and the line ends inside quotes that scanRecord found
+    private long recordLine, nextLine = 1;
+    private int quotedLineEnds;
+    private int fieldCount;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+
+    public CsvReader(Path file, boolean mapped) throws IOException {
+        this(file, mapped, 0, Long.MAX_VALUE);
+    }
+
+    // Reads only the bytes in [start, end) of file
+    public CsvReader(Path file, boolean mapped, long start, long end) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.mapped = mapped;
+        this.filePos = start;
+        this.endPos = Math.min(end, channel.size());
+    }
+
+    // Opens file, or returns null when it does not exist (try-with-resources skips null)
+    public static CsvReader open(String file, boolean mapped) throws IOException {
+        Path path = Paths.get(file);
+        if (!Files.isRegularFile(path)) return null;
+        return new CsvReader(path, mapped);
+    }
+
+    // Advances to the next record; false at end of file
+    public boolean next() throws IOException {
+        while (true) {
+            int end = scanRecord(pos);
+            if (end >= 0) {
+                // A trailing \r may be the first half of \r\n; read on before deciding
+                if (buf[end] == '\r' && end + 1 == limit && !eof) {
+                    fill();
+                    continue;
+                }
+                lineStart = pos;
+                lineEnd = end;
+                terminated = true;
+                recordLine = nextLine;
+                nextLine += 1 + quotedLineEnds;
+                pos = end + 1;
+                if (buf[end] == '\r' && pos < limit && buf[pos] == '\n') pos++;
+                return true;
+            }
+            if (eof) {
+                if (pos >= limit) return false;
+                // Last record has no line end
+                addField(openFieldStart, limit, openFieldQuoted);
+                lineStart = pos;
+                lineEnd = limit;
+                terminated = false;
+                recordLine = nextLine;
+                pos = limit;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    // False when the current record ran into the end of the file without a
+    // line end, e.g. a record cut off by a crash
+    public boolean isTerminated() { return terminated; }
+
+    // Line the current record starts on, from 1 at the start of the
+    // reader's range; a \r\n pair is one line end
+    public long lineNumber() { return recordLine; }
+
+    private boolean terminated;
+
+    // Start of the field still open when scanRecord ran out of bytes
+    private int openFieldStart;
+    private boolean openFieldQuoted;
+
+    // Records field offsets from from up to the end of the record and
+    // returns the index of its line end, or -1 if the buffer ends first.
+    // Tracking quote parity is enough to find separators: a run of quotes
+    // leaves the same quoted state as the "" escape rule does.
+    private int scanRecord(int from) {
+        fieldCount = 0;
+        quotedLineEnds = 0;
+        byte[] b = buf;
+        int lim = limit;
+        int fs = from;
+        boolean inQuotes = false, quoted = false;
+        for (int i = from; i < lim; i++) {
+            byte c = b[i];
+            if (c == '"') {
+                inQuotes = !inQuotes;
+                quoted = true;
+            } else if (!inQuotes) {
+                if (c == ',') {
+                    addField(fs, i, quoted);
+                    fs = i + 1;
+                    quoted = false;
+                } else if (c == '\n' || c == '\r') {
+                    addField(fs, i, quoted);
+                    return i;
+                }
+            } else if (c == '\n' || c == '\r' && (i + 1 == lim || b[i + 1] != '\n')) {
+                quotedLineEnds++;
+            }
+        }
+        openFieldStart = fs;
+        openFieldQuoted = quoted;
+        return -1;
+    }
+
+    // Moves the unread tail to the front of buf and reads more bytes after it
+    private void fill() throws IOException {
+        int remaining = limit - pos;
+        if (remaining > 0 && pos > 0) System.arraycopy(buf, pos, buf, 0, remaining);
+        pos = 0;
+        limit = remaining;
+        if (limit == buf.length) {
+            byte[] bigger = new byte[buf.length << 1];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+        int n = mapped ? readMapped(buf, limit, buf.length - limit) : readChannel(buf, limit, buf.length - limit);
+        if (n <= 0) {
+            eof = true;
+            return;
+        }
+        limit += n;
+    }
+
+    private int readChannel(byte[] dst, int off, int len) throws IOException {
+        len = (int) Math.min(len, endPos - filePos);
+        if (len <= 0) return -1;
+        ByteBuffer bb = ByteBuffer.wrap(dst, off, len);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, filePos + bb.position() - off) < 0) break;
+        }
+        int n = bb.position() - off;
+        filePos += n;
+        return n == 0 ? -1 : n;
+    }
+
+    private MappedByteBuffer window;
+
+    private int readMapped(byte[] dst, int off, int len) throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            if (filePos >= endPos) return -1;
+            long size = Math.min(MAP_WINDOW, endPos - filePos);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, filePos, size);
+            filePos += size;
+        }
+        int n = Math.min(len, window.remaining());
+        window.get(dst, off, n);
+        return n;
+    }
+
+    private void addField(int start, int end, boolean quoted) {
+        if (fieldCount == fieldStart.length) {
+            int n = fieldCount << 1;
+            fieldStart = Arrays.copyOf(fieldStart, n);
+            fieldEnd = Arrays.copyOf(fieldEnd, n);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, n);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldQuoted[fieldCount] = quoted;
+        fieldCount++;
+    }
+
+    // Cuts file into at most parts ranges that each start at a record
+    // start. Returns the boundaries, from 0 to the file size; ranges are
+    // never smaller than minBytes. Finding record starts needs the quote
+    // state, so this makes one sequential pass over the file counting quotes.
+    public static long[] split(Path file, int parts, long minBytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            parts = (int) Math.max(1, Math.min(parts, size / Math.max(1, minBytes)));
+            long[] bounds = new long[parts + 1];
+            int n = 1;
+            long target = size / parts;
+            boolean inQuotes = false;
+            ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] b = block.array();
+            long base = 0;
+            while (n < parts && base < size) {
+                block.clear();
+                int len = ch.read(block, base);
+                if (len <= 0) break;
+                for (int i = 0; i < len; i++) {
+                    byte c = b[i];
+                    if (c == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (c == '\n' && !inQuotes && base + i >= target) {
+                        long start = base + i + 1;
+                        if (start >= size) break;
+                        bounds[n++] = start;
+                        if (n == parts) break;
+                        target = Math.max(start, size * n / parts);
+                    }
+                }
+                base += len;
+            }
+            bounds[n++] = size;
+            return Arrays.copyOf(bounds, n);
+        }
+    }
+
+    public int fieldCount() { return fieldCount; }
+
+    // Same test as line.trim().isEmpty()
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if ((buf[i] & 0xFF) > ' ') return false;
+        }
+        return true;
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        int start = fieldStart[field], end = fieldEnd[field];
+        if (!fieldQuoted[field]) return new String(buf, start, end - start, StandardCharsets.UTF_8);
+        return unquote(start, end);
+    }
+
+    private String unquote(int start, int end) {
+        byte[] out = new byte[end - start];
+        int n = 0;
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            byte c = buf[i];
+            if (c == '"') {
+                if (inQuotes && i + 1 < end && buf[i + 1] == '"') {
+                    out[n++] = '"';
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                out[n++] = c;
+            }
+        }
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+
+    // Plain ASCII integers are parsed from the bytes; anything unusual is
+    // handed to Integer.parseInt so results and errors stay identical
+    public int getInt(int field) {
+        checkField(field);
+        int i = fieldStart[field], end = fieldEnd[field];
+        if (!fieldQuoted[field] && i < end && end - i <= 10) {
+            boolean negative = buf[i] == '-';
+            if (negative || buf[i] == '+') i++;
+            long value = 0;
+            boolean ok = i < end;
+            for (; i < end; i++) {
+                int d = buf[i] - '0';
+                if (d < 0 || d > 9) { ok = false; break; }
+                value = value * 10 + d;
+            }
+            if (ok) {
+                if (negative) value = -value;
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+            }
+        }
+        return Integer.parseInt(getString(field));
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Plain decimals with up to 15 significant digits are converted exactly
+    // (mantissa and power of ten are both exact doubles, so one division is
+    // correctly rounded); anything else goes through Double.parseDouble.
+    public double getDouble(int field) {
+        checkField(field);
+        if (!fieldQuoted[field]) {
+            int i = fieldStart[field], end = fieldEnd[field];
+            boolean negative = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) negative = buf[i++] == '-';
+            long mantissa = 0;
+            int digits = 0, scale = 0;
+            boolean dot = false, ok = i < end;
+            for (; i < end; i++) {
+                byte c = buf[i];
+                if (c >= '0' && c <= '9') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (++digits > 15) { ok = false; break; }
+                    if (dot) scale++;
+                } else if (c == '.' && !dot) {
+                    dot = true;
+                } else {
+                    ok = false;
+                    break;
+                }
+            }
+            if (ok && digits > 0) {
+                double v = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+                return negative ? -v : v;
+            }
+        }
+        return Double.parseDouble(getString(field));
+    }
+
+    // Same result as Boolean.parseBoolean
+    public boolean getBoolean(int field) {
+        checkField(field);
+        if (fieldQuoted[field]) return Boolean.parseBoolean(getString(field));
+        int i = fieldStart[field];
+        return fieldEnd[field] - i == 4
+                && (buf[i] | 0x20) == 't' && (buf[i + 1] | 0x20) == 'r'
+                && (buf[i + 2] | 0x20) == 'u' && (buf[i + 3] | 0x20) == 'e';
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " out of bounds for " + fieldCount + " fields");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
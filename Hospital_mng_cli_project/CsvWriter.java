@@ -0,0 +1,242 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+// ===================
+// CsvWriter - buffered CSV writer
+// ===================
+// Encodes fields as UTF-8 straight into one reusable byte buffer that is
+// written to a channel when full. Text fields are escaped in a single pass:
+// the field is copied with quotes doubled after a byte reserved for an
+// opening quote, and only if a comma, quote or line break turned up is that
+// byte set and a closing quote added; otherwise the field is shifted back
+// over it. Numbers are formatted digit by digit, so writing a row allocates
+// nothing. Output is read back unchanged by CsvReader.
+class CsvWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] buf = buffer.array();
+    private int pos;
+    private boolean firstField = true;
+
+    public CsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public CsvWriter field(CharSequence s) throws IOException {
+        separator();
+        if (s == null) return this;
+        int len = s.length();
+        // Worst case: every char takes 3 bytes or is a doubled quote, plus two quotes
+        long worst = 3L * len + 2;
+        if (worst > buf.length) {
+            writeLarge(s);
+            return this;
+        }
+        if (pos + worst > buf.length) drain();
+        int open = pos++;
+        boolean quote = false;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buf[pos++] = '"';
+                    quote = true;
+                } else if (c == ',' || c == '\n' || c == '\r') {
+                    quote = true;
+                }
+                buf[pos++] = (byte) c;
+            } else {
+                i = encode(s, i, c);
+            }
+        }
+        if (quote) {
+            buf[open] = '"';
+            buf[pos++] = '"';
+        } else {
+            System.arraycopy(buf, open + 1, buf, open, pos - open - 1);
+            pos--;
+        }
+        return this;
+    }
+
+    // Fields too big for the buffer: decide on quoting first, then stream
+    private void writeLarge(CharSequence s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == '"' || c == ',' || c == '\n' || c == '\r';
+        }
+        if (quote) put('"');
+        for (int i = 0; i < s.length(); i++) {
+            if (pos + 4 > buf.length) drain();
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' && quote) buf[pos++] = '"';
+                buf[pos++] = (byte) c;
+            } else {
+                i = encode(s, i, c);
+            }
+        }
+        if (quote) put('"');
+    }
+
+    // Writes the UTF-8 bytes for the char at i; returns the index of the last char used
+    private int encode(CharSequence s, int i, char c) {
+        if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buf[pos++] = (byte) (0xF0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            buf[pos++] = '?';
+        } else {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    public CsvWriter field(long v) throws IOException {
+        separator();
+        if (pos + 20 > buf.length) drain();
+        putLong(v);
+        return this;
+    }
+
+    public CsvWriter field(boolean v) throws IOException {
+        separator();
+        if (pos + 5 > buf.length) drain();
+        if (v) {
+            buf[pos++] = 't'; buf[pos++] = 'r'; buf[pos++] = 'u'; buf[pos++] = 'e';
+        } else {
+            buf[pos++] = 'f'; buf[pos++] = 'a'; buf[pos++] = 'l'; buf[pos++] = 's'; buf[pos++] = 'e';
+        }
+        return this;
+    }
+
+    // Same text as String.format("%.2f", v) with a '.' separator. Values
+    // that are whole cents are written directly; others fall back to the
+    // formatter so rounding stays identical.
+    public CsvWriter fieldFixed2(double v) throws IOException {
+        separator();
+        if (pos + 24 > buf.length) drain();
+        double abs = Math.abs(v);
+        long cents = Math.round(abs * 100);
+        if (abs < 1e15 && cents / 100.0 == abs) {
+            if (Double.doubleToRawLongBits(v) < 0) buf[pos++] = '-';
+            putLong(cents / 100);
+            buf[pos++] = '.';
+            int frac = (int) (cents % 100);
+            buf[pos++] = (byte) ('0' + frac / 10);
+            buf[pos++] = (byte) ('0' + frac % 10);
+        } else {
+            String text = String.format(Locale.ROOT, "%.2f", v);
+            for (int i = 0; i < text.length(); i++) put(text.charAt(i));
+        }
+        return this;
+    }
+
+    public CsvWriter header(String... names) throws IOException {
+        for (String name : names) field(name);
+        return endRecord();
+    }
+
+    public CsvWriter endRecord() throws IOException {
+        put('\n');
+        firstField = true;
+        return this;
+    }
+
+    private void separator() throws IOException {
+        if (firstField) {
+            firstField = false;
+        } else {
+            put(',');
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) c;
+    }
+
+    private void putLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            for (byte c : Long.toString(v).getBytes()) buf[pos++] = c;
+            return;
+        }
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.clear().limit(pos);
+        while (buffer.hasRemaining()) channel.write(buffer);
+        pos = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (pos > 0) drain();
+    }
+
+    // Flushes and forces the file to disk (file channels only)
+    public void sync() throws IOException {
+        flush();
+        if (channel instanceof FileChannel) ((FileChannel) channel).force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Appends field to sb with the same escaping, for records built as text
+    public static void escape(CharSequence field, StringBuilder sb) {
+        if (field == null) return;
+        int open = sb.length();
+        sb.append('"');
+        boolean quote = false;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+                quote = true;
+            } else if (c == ',' || c == '\n' || c == '\r') {
+                quote = true;
+            }
+            sb.append(c);
+        }
+        if (quote) {
+            sb.append('"');
+        } else {
+            sb.deleteCharAt(open);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+// ===================
+// DataGenerator - synthetic data files at any scale
+// ===================
+// Writes doctors.csv, patients.csv, staff.csv and appointments.csv for
+// the Hospital to load. Appointments pick their doctor and patient from a
+// Zipf distribution: with skew s the doctor of rank r (ID r) gets a share
+// proportional to 1/r^s, so a skew of 1 gives a few very busy doctors and
+// a long tail of quiet ones, and 0 spreads appointments evenly. The same
+// settings and seed always give the same files.
+//
+//   java -Dgen.patients=1000000 -Dgen.doctorSkew=1.2 DataGenerator [dir]
+//
+// Properties:
+//   gen.patients       patients, default 10000
+//   gen.doctors        doctors, default one per 100 patients (at least 10)
+//   gen.staff          staff, default one per 20 patients (at least 10)
+//   gen.appointments   appointments in 2026, default one per patient
+//   gen.doctorSkew     Zipf exponent for the doctor of an appointment, default 1
+//   gen.patientSkew    Zipf exponent for the patient of an appointment, default 0
+//   gen.seed           random seed, default 42
+//
+// It refuses to write into a directory that already holds Hospital data.
+class DataGenerator {
+    static final String[] SPECIALIZATIONS = { "Cardiology", "Neurology", "Pediatrics", "Orthopedics", "Dermatology", "Oncology" };
+    static final String[] DISEASES = { "flu", "diabetes", "asthma", "fracture", "migraine", "hypertension, stage 1" };
+    static final String[] DEPARTMENTS = { "Reception", "Nursing", "Maintenance", "Pharmacy", "Radiology", "Laboratory" };
+    static final String[] POSITIONS = { "Receptionist", "Nurse", "Technician", "Pharmacist", "Assistant" };
+
+    private static final String[] FIRST_NAMES = {
+        "Aarav", "Ana", "Ben", "Chloe", "David", "Elif", "Farah", "George", "Hana", "Ivan", "Jia", "Karim",
+        "Lena", "Mateo", "Nadia", "Omar", "Priya", "Quinn", "Rosa", "Sujoy", "Tomás", "Uma", "Victor", "Wei", "Yusuf", "Zoe"
+    };
+    private static final String[] LAST_NAMES = {
+        "Ahmed", "Baker", "Chen", "Das", "Evans", "Fischer", "García", "Hughes", "Ito", "Jensen", "Khan", "Lopez",
+        "Müller", "Nguyen", "O'Brien", "Patel", "Rossi", "Sato", "Silva", "Smith", "Taylor", "Wang", "Yilmaz"
+    };
+
+    // Files the Hospital keeps in its directory
+    static final String[] DATA_FILES = {
+        "doctors.csv", "patients.csv", "staff.csv", "appointments.csv",
+        Hospital.JOURNAL_FILE, Hospital.BINARY_FILE
+    };
+
+    private final int patients;
+    private int doctors, staff, appointments;
+    private double doctorSkew = 1, patientSkew = 0;
+    private long seed = 42;
+
+    public DataGenerator(int patients) {
+        this.patients = patients;
+        this.doctors = Math.max(10, patients / 100);
+        this.staff = Math.max(10, patients / 20);
+        this.appointments = patients;
+    }
+
+    public DataGenerator doctors(int n) { doctors = n; return this; }
+    public DataGenerator staff(int n) { staff = n; return this; }
+    public DataGenerator appointments(int n) { appointments = n; return this; }
+    public DataGenerator doctorSkew(double s) { doctorSkew = s; return this; }
+    public DataGenerator patientSkew(double s) { patientSkew = s; return this; }
+    public DataGenerator seed(long s) { seed = s; return this; }
+
+    public void write(Path dir) throws IOException {
+        Random rnd = new Random(seed);
+
+        try (CsvWriter w = writer(dir, "doctors.csv")) {
+            w.header("ID", "Name", "Age", "Specialization", "Fee");
+            for (int id = 1; id <= doctors; id++) {
+                w.field(id).field(name(id)).field(30 + rnd.nextInt(35))
+                        .field(SPECIALIZATIONS[rnd.nextInt(SPECIALIZATIONS.length)])
+                        .fieldFixed2(50 + rnd.nextInt(200) + 0.5 * rnd.nextInt(2)).endRecord();
+            }
+        }
+        try (CsvWriter w = writer(dir, "patients.csv")) {
+            w.header("ID", "Name", "Age", "Disease", "TestRequired", "Prescription");
+            for (int id = 1; id <= patients; id++) {
+                w.field(id).field(name(id + doctors)).field(1 + rnd.nextInt(95))
+                        .field(DISEASES[rnd.nextInt(DISEASES.length)]).field(rnd.nextInt(4) == 0)
+                        .field(rnd.nextInt(3) == 0 ? "rest, \"fluids\"" : "").endRecord();
+            }
+        }
+        try (CsvWriter w = writer(dir, "staff.csv")) {
+            w.header("ID", "Name", "Age", "Department", "Position", "Salary");
+            for (int id = 1; id <= staff; id++) {
+                w.field(id).field(name(id + doctors + patients)).field(20 + rnd.nextInt(45))
+                        .field(DEPARTMENTS[rnd.nextInt(DEPARTMENTS.length)])
+                        .field(POSITIONS[rnd.nextInt(POSITIONS.length)])
+                        .fieldFixed2(25000 + rnd.nextInt(50000)).endRecord();
+            }
+        }
+        Zipf doctorPick = new Zipf(doctors, doctorSkew);
+        Zipf patientPick = new Zipf(patients, patientSkew);
+        try (CsvWriter w = writer(dir, "appointments.csv")) {
+            w.header("DoctorID", "PatientID", "Date", "Paid", "Time");
+            for (int i = 0; i < appointments; i++) {
+                String date = String.format(Locale.ROOT, "%02d/%02d/2026", 1 + rnd.nextInt(28), 1 + rnd.nextInt(12));
+                w.field(1 + doctorPick.next(rnd)).field(1 + patientPick.next(rnd)).field(date).field(rnd.nextBoolean())
+                        .field(randomTime(rnd)).endRecord();
+            }
+        }
+    }
+
+    // A first and last name that depends only on n
+    private static String name(int n) {
+        return FIRST_NAMES[n % FIRST_NAMES.length] + " " + LAST_NAMES[(n / FIRST_NAMES.length) % LAST_NAMES.length];
+    }
+
+    // A slot start within the default opening hours, 08:00 to 17:30
+    static String randomTime(Random rnd) {
+        int slot = 16 + rnd.nextInt(20);
+        return String.format(Locale.ROOT, "%02d:%02d", slot / 2, slot % 2 * 30);
+    }
+
+    private static CsvWriter writer(Path dir, String file) throws IOException {
+        return new CsvWriter(FileChannel.open(dir.resolve(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // ===================
+    // Zipf - ranks 0 to n-1, rank r drawn with weight 1/(r+1)^s
+    // ===================
+    // A skew of 0 or less is uniform and draws exactly like Random.nextInt.
+    // Otherwise a draw is a binary search of the cumulative weights, which
+    // take eight bytes per rank.
+    static final class Zipf {
+        private final int n;
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            this.n = n;
+            if (skew <= 0) {
+                cumulative = null;
+                return;
+            }
+            cumulative = new double[n];
+            double sum = 0;
+            for (int r = 0; r < n; r++) cumulative[r] = sum += Math.pow(r + 1, -skew);
+            for (int r = 0; r < n; r++) cumulative[r] /= sum;
+        }
+
+        int next(Random rnd) {
+            if (cumulative == null) return rnd.nextInt(n);
+            // Rank r covers draws above cumulative[r - 1] up to cumulative[r]
+            int r = Arrays.binarySearch(cumulative, rnd.nextDouble());
+            return Math.min(n - 1, r >= 0 ? r : -r - 1);
+        }
+
+        // Share of draws that land on the top ranks
+        double share(int top) {
+            if (cumulative == null) return (double) Math.min(top, n) / n;
+            return top <= 0 ? 0 : cumulative[Math.min(top, n) - 1];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : ".");
+        for (String f : DATA_FILES) {
+            if (Files.exists(dir.resolve(f))) {
+                System.out.println("❌ " + f + " exists in " + dir.toAbsolutePath().normalize() + "; generate into an empty directory.");
+                return;
+            }
+        }
+        DataGenerator g = new DataGenerator(Integer.getInteger("gen.patients", 10000));
+        if (Integer.getInteger("gen.doctors") != null) g.doctors(Integer.getInteger("gen.doctors"));
+        if (Integer.getInteger("gen.staff") != null) g.staff(Integer.getInteger("gen.staff"));
+        if (Integer.getInteger("gen.appointments") != null) g.appointments(Integer.getInteger("gen.appointments"));
+        g.doctorSkew(Double.parseDouble(System.getProperty("gen.doctorSkew", "1")))
+                .patientSkew(Double.parseDouble(System.getProperty("gen.patientSkew", "0")))
+                .seed(Long.getLong("gen.seed", 42));
+
+        Files.createDirectories(dir);
+        long start = System.nanoTime();
+        g.write(dir);
+        Zipf busy = new Zipf(g.doctors, g.doctorSkew);
+        int top = Math.max(1, g.doctors / 100);
+        System.out.printf(Locale.ROOT, "✅ Wrote %d doctors, %d patients, %d staff and %d appointments to %s in %.2f s%n",
+                g.doctors, g.patients, g.staff, g.appointments, dir.toAbsolutePath().normalize(), (System.nanoTime() - start) / 1e9);
+        System.out.printf(Locale.ROOT, "   The busiest %d doctor(s) have %.1f%% of the appointments%n", top, 100 * busy.share(top));
+    }
+}
@@ -0,0 +1,125 @@
+import java.time.LocalDate;
+
+// ===================
+// Dates - appointment dates as epoch days
+// ===================
+// Appointment dates are typed as text; they are parsed once into the
+// number of days since 1970-01-01 so they can be compared and indexed as
+// plain ints. Accepted forms are d/m/yyyy (the form the menus ask for,
+// one or two digit day and month) and ISO yyyy-mm-dd. Anything else, or a
+// day that does not exist, parses to UNKNOWN.
+//
+// A style records which of the accepted forms a date was typed in, so the
+// text can be rebuilt from the epoch day exactly as it was typed.
+final class Dates {
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    // Styles: dd/mm/yyyy, with single-digit day or month, or yyyy-mm-dd
+    static final int DMY = 0;
+    static final int SHORT_DAY = 1;
+    static final int SHORT_MONTH = 2;
+    static final int ISO = 4;
+
+    private static final int DAYS_0000_TO_1970 = 719528;
+
+    private Dates() {}
+
+    public static int parse(String text) {
+        if (text == null) return UNKNOWN;
+        int start = 0, end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        // Three numbers of up to four digits with the same separator twice
+        int first = 0, second = 0, third = 0;
+        int firstDigits = 0, secondDigits = 0, thirdDigits = 0;
+        int i = start;
+        for (; i < end && isDigit(text.charAt(i)) && firstDigits < 4; i++, firstDigits++) first = first * 10 + text.charAt(i) - '0';
+        if (i == end || firstDigits == 0) return UNKNOWN;
+        char separator = text.charAt(i++);
+        if (separator != '/' && separator != '-') return UNKNOWN;
+        for (; i < end && isDigit(text.charAt(i)) && secondDigits < 4; i++, secondDigits++) second = second * 10 + text.charAt(i) - '0';
+        if (i == end || secondDigits == 0 || text.charAt(i++) != separator) return UNKNOWN;
+        for (; i < end && isDigit(text.charAt(i)) && thirdDigits < 4; i++, thirdDigits++) third = third * 10 + text.charAt(i) - '0';
+        if (i != end) return UNKNOWN;
+
+        if (separator == '/' && firstDigits <= 2 && secondDigits <= 2 && thirdDigits == 4) return of(third, second, first);
+        if (separator == '-' && firstDigits == 4 && secondDigits == 2 && thirdDigits == 2) return of(first, second, third);
+        return UNKNOWN;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Epoch day of a calendar date, or UNKNOWN if there is no such day
+    public static int of(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) return UNKNOWN;
+        // Same arithmetic as LocalDate.toEpochDay, without the object
+        long y = year;
+        long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) total -= isLeap(year) ? 1 : 2;
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeap(year) ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Style of a text that parses, or -1 if format could not give the
+    // same text back (blanks around it)
+    public static int styleOf(String text) {
+        int n = text.length();
+        if (n == 0 || text.charAt(0) <= ' ' || text.charAt(n - 1) <= ' ') return -1;
+        if (text.indexOf('-') >= 0) return ISO;
+        int first = text.indexOf('/'), second = text.indexOf('/', first + 1);
+        return (first == 1 ? SHORT_DAY : 0) | (second - first == 2 ? SHORT_MONTH : 0);
+    }
+
+    // dd/mm/yyyy, the form used by the menus
+    public static String format(int epochDay) {
+        return format(epochDay, DMY);
+    }
+
+    public static String format(int epochDay, int style) {
+        if (epochDay == UNKNOWN) return "?";
+        return appendTo(new StringBuilder(10), epochDay, style).toString();
+    }
+
+    // Appends a known date in style to sb, without making a String
+    public static StringBuilder appendTo(StringBuilder sb, int epochDay, int style) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        if ((style & ISO) != 0) {
+            digits(sb, d.getYear(), 4).append('-');
+            digits(sb, d.getMonthValue(), 2).append('-');
+            return digits(sb, d.getDayOfMonth(), 2);
+        }
+        digits(sb, d.getDayOfMonth(), (style & SHORT_DAY) != 0 ? 1 : 2).append('/');
+        digits(sb, d.getMonthValue(), (style & SHORT_MONTH) != 0 ? 1 : 2).append('/');
+        return digits(sb, d.getYear(), 4);
+    }
+
+    // value with leading zeros up to width digits
+    private static StringBuilder digits(StringBuilder sb, int value, int width) {
+        int length = value >= 1000 ? 4 : value >= 100 ? 3 : value >= 10 ? 2 : 1;
+        for (int i = length; i < width; i++) sb.append('0');
+        return sb.append(value);
+    }
+
+    public static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+}
@@ -0,0 +1,18 @@
+import java.util.*;
+
+// ===================
+// Department (index entry)
+// ===================
+class Department {
+    private final String name;
+    private final List<Staff> members = new AppendOnlyList<>();
+
+    public Department(String name) {
+        this.name = name;
+    }
+
+    // Spelling of the first staff member seen in this department
+    public String getName() { return name; }
+    public List<Staff> getMembers() { return members; }
+    public int getHeadCount() { return members.size(); }
+}
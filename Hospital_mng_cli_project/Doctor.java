@@ -0,0 +1,36 @@
+// ===================
+// Doctor class
+// ===================
+// The specialization is kept as a code in the Hospital's SymbolTable
+class Doctor extends Person {
+    private final SymbolTable symbols;
+    private int id;
+    private String name;
+    private int age;
+    private int specialization;
+    private double appointmentFee;
+
+    public Doctor(SymbolTable symbols, int id, String name, int age, String specialization, double appointmentFee) {
+        this.symbols = symbols;
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.specialization = symbols.code(specialization);
+        this.appointmentFee = appointmentFee;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getAge() { return age; }
+
+    public String getSpecialization() { return symbols.text(specialization); }
+    // Equal for specializations spelt alike ignoring case and blanks
+    public int getSpecializationKey() { return symbols.key(specialization); }
+    public double getAppointmentFee() { return appointmentFee; }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Specialization: %-15s | Fee: $%-6.2f",
+                id, name, age, getSpecialization(), appointmentFee);
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.*;
+
+// ===================
+// FeeLedger - running appointment fee totals
+// ===================
+// Paid and outstanding fees, in cents, overall and per doctor, per
+// specialization and per day, kept up to date as appointments are booked
+// and paid so that reading any of them is a single lookup. Each Totals
+// value is immutable and replaced on every change, so a reader always sees
+// an amount and count that belong together without taking a lock. Updates
+// must not overlap; the Hospital makes them under its appointment lock.
+class FeeLedger {
+    static final class Totals {
+        static final Totals EMPTY = new Totals("", 0, 0, 0, 0);
+
+        final String name;
+        final long paidCents, paidCount;
+        final long outstandingCents, outstandingCount;
+
+        Totals(String name, long paidCents, long paidCount, long outstandingCents, long outstandingCount) {
+            this.name = name;
+            this.paidCents = paidCents;
+            this.paidCount = paidCount;
+            this.outstandingCents = outstandingCents;
+            this.outstandingCount = outstandingCount;
+        }
+
+        private Totals(String name, long[] sums) {
+            this(name, sums[PAID], sums[PAID_COUNT], sums[OUTSTANDING], sums[OUTSTANDING_COUNT]);
+        }
+
+        Totals booked(long cents) {
+            return new Totals(name, paidCents, paidCount, outstandingCents + cents, outstandingCount + 1);
+        }
+
+        Totals paid(long cents) {
+            return new Totals(name, paidCents + cents, paidCount + 1, outstandingCents - cents, outstandingCount - 1);
+        }
+    }
+
+    // The Hospital's table, which specialization keys refer to
+    private final SymbolTable symbols;
+    private volatile Totals total = Totals.EMPTY;
+    private final IntMap<Totals> byDoctor = new IntMap<>();
+    private final IntMap<Totals> byDay = new IntMap<>();
+    // Keyed by specialization key (see Doctor.getSpecializationKey); each
+    // keeps the first spelling seen. specializations lists the keys present.
+    private final IntMap<Totals> bySpecialization = new IntMap<>();
+    private final IntList specializations = new IntList();
+
+    public FeeLedger(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // "1234.50"
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        return String.format(Locale.ROOT, "%s%d.%02d", cents < 0 ? "-" : "", abs / 100, abs % 100);
+    }
+
+    // A new unpaid appointment
+    public void booked(Appointment a) {
+        long cents = toCents(a.getFee());
+        Doctor d = a.getDoctor();
+        total = total.booked(cents);
+        byDoctor.put(d.getId(), get(byDoctor, d.getId()).booked(cents));
+        byDay.put(a.getDay(), get(byDay, a.getDay()).booked(cents));
+        int key = d.getSpecializationKey();
+        bySpecialization.put(key, specialization(key).booked(cents));
+    }
+
+    // An outstanding appointment was paid
+    public void paid(Appointment a) {
+        long cents = toCents(a.getFee());
+        Doctor d = a.getDoctor();
+        total = total.paid(cents);
+        byDoctor.put(d.getId(), get(byDoctor, d.getId()).paid(cents));
+        byDay.put(a.getDay(), get(byDay, a.getDay()).paid(cents));
+        int key = d.getSpecializationKey();
+        bySpecialization.put(key, specialization(key).paid(cents));
+    }
+
+    // Totals counted from scratch, for loading. Sums are kept per doctor
+    // and per day first; specialization totals are the sums of their
+    // doctors', as a doctor's specialization never changes.
+    public static FeeLedger of(SymbolTable symbols, List<Appointment> appointments) {
+        IntMap<long[]> doctorSums = new IntMap<>();
+        IntMap<long[]> daySums = new IntMap<>();
+        List<Doctor> doctors = new ArrayList<>();
+        IntList days = new IntList();
+        long[] all = new long[4];
+        for (Appointment a : appointments) {
+            Doctor d = a.getDoctor();
+            long[] doctor = doctorSums.get(d.getId());
+            if (doctor == null) {
+                doctorSums.put(d.getId(), doctor = new long[4]);
+                doctors.add(d);
+            }
+            long[] day = daySums.get(a.getDay());
+            if (day == null) {
+                daySums.put(a.getDay(), day = new long[4]);
+                days.add(a.getDay());
+            }
+            long cents = toCents(a.getFee());
+            add(all, cents, a.isPaid());
+            add(doctor, cents, a.isPaid());
+            add(day, cents, a.isPaid());
+        }
+
+        FeeLedger ledger = new FeeLedger(symbols);
+        ledger.total = new Totals("", all);
+        IntMap<long[]> specializationSums = new IntMap<>();
+        for (Doctor d : doctors) {
+            long[] sums = doctorSums.get(d.getId());
+            ledger.byDoctor.put(d.getId(), new Totals(d.getName(), sums));
+            int key = d.getSpecializationKey();
+            long[] spec = specializationSums.get(key);
+            if (spec == null) {
+                specializationSums.put(key, spec = new long[4]);
+                ledger.specializations.add(key);
+            }
+            for (int i = 0; i < spec.length; i++) spec[i] += sums[i];
+        }
+        for (int i = 0; i < ledger.specializations.size(); i++) {
+            int key = ledger.specializations.get(i);
+            ledger.bySpecialization.put(key, new Totals(ledger.name(key), specializationSums.get(key)));
+        }
+        for (int i = 0; i < days.size(); i++) {
+            ledger.byDay.put(days.get(i), new Totals("", daySums.get(days.get(i))));
+        }
+        return ledger;
+    }
+
+    private static final int PAID = 0, PAID_COUNT = 1, OUTSTANDING = 2, OUTSTANDING_COUNT = 3;
+
+    private static void add(long[] sums, long cents, boolean paid) {
+        if (paid) {
+            sums[PAID] += cents;
+            sums[PAID_COUNT]++;
+        } else {
+            sums[OUTSTANDING] += cents;
+            sums[OUTSTANDING_COUNT]++;
+        }
+    }
+
+    private static Totals get(IntMap<Totals> map, int key) {
+        Totals t = map.get(key);
+        return t != null ? t : Totals.EMPTY;
+    }
+
+    private String name(int specializationKey) {
+        return symbols.text(specializationKey).trim();
+    }
+
+    private Totals specialization(int key) {
+        Totals t = bySpecialization.get(key);
+        if (t != null) return t;
+        specializations.add(key);
+        return new Totals(name(key), 0, 0, 0, 0);
+    }
+
+    public Totals getTotal() { return total; }
+    public Totals getDoctor(int doctorId) { return get(byDoctor, doctorId); }
+    // Appointments whose date did not parse are under Dates.UNKNOWN
+    public Totals getDay(int day) { return get(byDay, day); }
+
+    public Totals getSpecialization(String specialization) {
+        int key = symbols.findKey(specialization);
+        return key != SymbolTable.NONE ? get(bySpecialization, key) : Totals.EMPTY;
+    }
+
+    // Every specialization with appointments, by name
+    public List<Totals> getSpecializations() {
+        List<Totals> list = new ArrayList<>();
+        for (int i = 0, n = specializations.size(); i < n; i++) {
+            Totals t = bySpecialization.get(specializations.get(i));
+            if (t != null) list.add(t);
+        }
+        list.sort(Comparator.comparing((Totals t) -> t.name, String.CASE_INSENSITIVE_ORDER));
+        return list;
+    }
+}
@@ -0,0 +1,1572 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// ===================
+// Hospital System
+// ===================
+// Several sessions may use one Hospital at once. Reads take no lock: the
+// record lists, ID maps and postings are append-only structures that are
+// safe to read while one writer appends, and the mutable record fields are
+// volatile. Writers lock only the entity type they change (doctors,
+// patients, staff or appointments) and write the journal under a separate
+// lock, logging each record before it becomes visible so the journal never
+// refers to a record it does not contain yet. IDs come from atomic counters.
+// Checkpoints take every entity lock, in the order declared below, to copy
+// a consistent snapshot.
+class Hospital {
+    // Codes for the specialization, disease, department and position
+    // columns (see SymbolTable), this Hospital's alone
+    private final SymbolTable symbols = new SymbolTable(true);
+    private List<Doctor> doctors = new AppendOnlyList<>();
+    // Patients are stored as columns (see PatientStore); patients is a
+    // list of views over all of its rows
+    private PatientStore patientStore = new PatientStore(symbols);
+    private List<Patient> patients = patientStore.asList();
+    private List<Staff> staffMembers = new AppendOnlyList<>();
+    // Appointments are stored off the heap (see AppointmentStore);
+    // appointments is a list of views over all of them
+    private final AppointmentStore appointmentStore = new AppointmentStore(this::findDoctor, this::findPatient);
+    private final List<Appointment> appointments = appointmentStore.asList();
+    // Accounts by username, with salted password hashes, and the sessions
+    // opened by logging in
+    private final CredentialStore<User> credentials = new CredentialStore<>(HASH_ITERATIONS, LOGIN_THREADS, LOGIN_QUEUE);
+    private final SessionCache<User> sessions = new SessionCache<>(SESSION_TTL_MINUTES * 60_000L);
+
+    // Primary key indexes (ID -> record)
+    private IntMap<Doctor> doctorsById = new IntMap<>();
+    private IntMap<Staff> staffById = new IntMap<>();
+
+    // Secondary appointment indexes (key -> positions in appointments)
+    private IntMap<IntList> appointmentsByDoctor = new IntMap<>();
+    private IntMap<IntList> appointmentsByPatient = new IntMap<>();
+
+    // Appointment positions by epoch day, in date order. Dates that do not
+    // parse (possible in old files) are indexed by their trimmed text.
+    private final ConcurrentSkipListMap<Integer, IntList> appointmentsByDay = new ConcurrentSkipListMap<>();
+    private final Map<String, IntList> appointmentsByDateText = new ConcurrentHashMap<>();
+
+    // Department index (department key -> members), see Staff.getDepartmentKey
+    private final IntMap<Department> departments = new IntMap<>();
+    private final List<Department> departmentList = new AppendOnlyList<>();
+
+    // Doctors by specialization key, the candidates for findFreeSlot
+    private final IntMap<List<Doctor>> doctorsBySpecialization = new IntMap<>();
+
+    // Name search (see NameIndex): patients by row, doctors by position
+    private final NameIndex patientNames = new NameIndex();
+    private final NameIndex doctorNames = new NameIndex();
+
+    // Most matches a name search shows (-Dhospital.search.limit)
+    static final int SEARCH_LIMIT = Integer.getInteger("hospital.search.limit", 20);
+
+    // Booked half-hour slots per doctor and day. Bookings claim their slot
+    // here before taking the appointment lock, so a double booking is
+    // turned away without waiting for other writers.
+    private final SlotBook slots = new SlotBook();
+
+    // Opening hours, searched by findFreeSlot and for bookings without a
+    // time (-Dhospital.hours=08:00-18:00)
+    private static final long OPEN_HOURS = openHours(System.getProperty("hospital.hours", "08:00-18:00"));
+
+    // Days ahead that findFreeSlot looks at
+    static final int SLOT_SEARCH_DAYS = 90;
+
+    private static long openHours(String hours) {
+        int dash = hours.indexOf('-');
+        int first = dash < 0 ? SlotBook.NONE : SlotBook.parseTime(hours.substring(0, dash));
+        int end = dash < 0 ? SlotBook.NONE : SlotBook.parseTime(hours.substring(dash + 1));
+        if (first == SlotBook.NONE || end == SlotBook.NONE || first >= end) {
+            return SlotBook.range(SlotBook.parseTime("08:00"), SlotBook.parseTime("18:00"));
+        }
+        return SlotBook.range(first, end);
+    }
+
+    // Call counts, errors and latencies of the public operations (see
+    // Metrics; -Dhospital.metrics=false turns them off)
+    private static final Metrics.Operation LOGIN = Metrics.operation("login");
+    private static final Metrics.Operation ADD_DOCTOR = Metrics.operation("addDoctor");
+    private static final Metrics.Operation ADD_PATIENT = Metrics.operation("addPatient");
+    private static final Metrics.Operation ADD_STAFF = Metrics.operation("addStaff");
+    private static final Metrics.Operation SCHEDULE = Metrics.operation("scheduleAppointment");
+    private static final Metrics.Operation TAKE_FEE = Metrics.operation("takeAppointmentFee");
+    private static final Metrics.Operation SHOW_SELECTION = Metrics.operation("showAppointmentSelection");
+    private static final Metrics.Operation SHOW_SCHEDULE = Metrics.operation("showSchedule");
+    private static final Metrics.Operation SHOW_BILLING = Metrics.operation("showBillingSummary");
+    private static final Metrics.Operation SHOW_DOCTOR_PATIENTS = Metrics.operation("showDoctorPatients");
+    private static final Metrics.Operation SEARCH_PATIENTS = Metrics.operation("searchPatients");
+    private static final Metrics.Operation SEARCH_DOCTORS = Metrics.operation("searchDoctors");
+    private static final Metrics.Operation FILTER_PATIENTS = Metrics.operation("filterPatients");
+    private static final Metrics.Operation LOAD = Metrics.operation("loadData");
+    private static final Metrics.Operation SAVE = Metrics.operation("saveData");
+
+    // Fee totals, updated by scheduleAppointment and takeAppointmentFee and
+    // counted afresh by loadData
+    private volatile FeeLedger ledger = new FeeLedger(symbols);
+
+    final AtomicInteger doctorCounter = new AtomicInteger(1);
+    final AtomicInteger patientCounter = new AtomicInteger(1);
+    final AtomicInteger staffCounter = new AtomicInteger(1);
+
+    // Writer locks, always taken in this order when more than one is needed
+    private final Object doctorLock = new Object();
+    private final Object patientLock = new Object();
+    private final Object staffLock = new Object();
+    private final Object appointmentLock = new Object();
+
+    // Memory-map the CSV files while loading (-Dhospital.mmap=true)
+    private static final boolean MAPPED_IO = Boolean.getBoolean("hospital.mmap");
+
+    // PBKDF2 iterations for new password hashes (-Dhospital.hash.iterations)
+    private static final int HASH_ITERATIONS = Integer.getInteger("hospital.hash.iterations", 100_000);
+
+    // Password hashing threads (-Dhospital.login.threads=N, 0 = one per
+    // core) and logins that may wait for one before more are turned away
+    private static final int LOGIN_THREADS = loadThreads(Integer.getInteger("hospital.login.threads", 0));
+    private static final int LOGIN_QUEUE = 256;
+
+    // Unused sessions expire after this many minutes (-Dhospital.session.ttl)
+    static final int SESSION_TTL_MINUTES = Integer.getInteger("hospital.session.ttl", 30);
+
+    // Loader threads (-Dhospital.load.threads=N, 0 = one per core)
+    private static final int LOAD_THREADS = loadThreads(Integer.getInteger("hospital.load.threads", 1));
+
+    private static int loadThreads(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Mutation journal, replayed on top of the CSV snapshot by loadData
+    static final String JOURNAL_FILE = "hospital.journal";
+    private static final String[] SNAPSHOT_FILES = { "doctors.csv", "patients.csv", "staff.csv", "appointments.csv" };
+
+    // Snapshot format (-Dhospital.snapshot=binary|csv). In binary mode the
+    // snapshot is hospital.snap and the CSV files are only read when no
+    // binary snapshot exists yet, or written on export.
+    static final String BINARY_FILE = "hospital.snap";
+    private static final boolean BINARY_SNAPSHOT = "binary".equalsIgnoreCase(System.getProperty("hospital.snapshot", "csv"));
+    private Journal journal;
+    private final Object journalLock = new Object();
+    private volatile long snapshotBytes;
+
+    public Hospital() {
+        // Default accounts: admin/admin123, user/user123, doctor/doctor123, staff/staff123
+        credentials.addEncoded("admin", "pbkdf2-sha256$100000$c9Afoue6wYKChnyAYViHFA==$B98C55pz30zufvpX5ECUtC86ieUNrPXX+ZNtCS2/gkc=",
+                new User("admin", "ADMIN"));
+        credentials.addEncoded("user", "pbkdf2-sha256$100000$rzKUqt5Dqu93E5MMoDGLxQ==$yYjQ5fHC3y3ww/61rhuZGx//yqOb+hfj2RftU1sn9EA=",
+                new User("user", "USER"));
+        credentials.addEncoded("doctor", "pbkdf2-sha256$100000$mjzxtGw5v1rBw3ZEVD1zMQ==$FJA39Ce5riyXkAd6Hzcm4fHLM3SUXPhn5fhL8uJ3EdU=",
+                new User("doctor", "DOCTOR"));
+        credentials.addEncoded("staff", "pbkdf2-sha256$100000$ZtsFTWdkxN8EMH+dH/YnkQ==$pZuEP50OrFVt9JNkc4oirPUl+URUqjgNpiy67lVmYGs=",
+                new User("staff", "STAFF"));
+    }
+
+    // Login: the password is checked on the hashing pool. Null if it does
+    // not match, or if too many logins are already waiting.
+    public User login(String username, String password) {
+        long start = Metrics.start();
+        User user = null;
+        try {
+            user = credentials.verify(username, password);
+        } catch (RejectedExecutionException e) {
+            System.out.println("❌ Too many logins at once, please try again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGIN.end(start, user != null);
+        return user;
+    }
+
+    // Sessions: a token from openSession logs the same user in again
+    // without a password until it goes unused for SESSION_TTL_MINUTES
+    public String openSession(User user) { return sessions.open(user); }
+    public User resumeSession(String token) { return sessions.resume(token); }
+    public void closeSession(String token) { sessions.close(token); }
+
+    // Lookups by ID
+    public Doctor findDoctor(int doctorId) { return doctorsById.get(doctorId); }
+    public Patient findPatient(int patientId) {
+        int row = patientStore.find(patientId);
+        return row >= 0 ? patientStore.view(row) : null;
+    }
+
+    void insertDoctor(Doctor d) {
+        doctors.add(d);
+        doctorNames.add(doctors.size() - 1, d.getName());
+        doctorsById.putIfAbsent(d.getId(), d);
+        List<Doctor> colleagues = doctorsBySpecialization.get(d.getSpecializationKey());
+        if (colleagues == null) doctorsBySpecialization.put(d.getSpecializationKey(), colleagues = new AppendOnlyList<>());
+        colleagues.add(d);
+    }
+
+    void insertPatient(int id, String name, int age, String disease, boolean testRequired, String prescription) {
+        patientNames.add(patientStore.add(id, name, age, disease, testRequired, prescription), name);
+    }
+
+    void insertStaff(Staff s) {
+        staffMembers.add(s);
+        staffById.putIfAbsent(s.getId(), s);
+        Department dept = departments.get(s.getDepartmentKey());
+        if (dept == null) {
+            dept = new Department(symbols.text(s.getDepartmentKey()).trim());
+            departments.put(s.getDepartmentKey(), dept);
+            departmentList.add(dept);
+        }
+        dept.getMembers().add(s);
+    }
+
+    // Stores a loaded or replayed appointment, marks its slot booked and
+    // indexes it; returns its index
+    int insertAppointment(Doctor d, Patient p, String date, int slot, boolean paid) {
+        int index = storeAppointment(d, p, date, slot, paid);
+        int day = appointmentStore.getDay(index);
+        if (slot != SlotBook.NONE && day != Dates.UNKNOWN) claimLoaded(d.getId(), day, slot, index);
+        return index;
+    }
+
+    // Loaded appointments that share a doctor's slot with an earlier one,
+    // and the position of the first. They are kept, since journal records
+    // refer to appointments by position, and reported by loadData.
+    private int doubleBooked;
+    private int firstDoubleBooked;
+
+    private void claimLoaded(int doctorId, int day, int slot, int index) {
+        if (!slots.claim(doctorId, day, slot) && doubleBooked++ == 0) firstDoubleBooked = index;
+    }
+
+    // Stores an appointment and indexes it, leaving its slot to the caller;
+    // returns its index
+    private int storeAppointment(Doctor d, Patient p, String date, int slot, boolean paid) {
+        int index = appointmentStore.add(d.getId(), p.getId(), date, slot, paid);
+        indexAppointment(appointmentsByDoctor, d.getId(), index);
+        indexAppointment(appointmentsByPatient, p.getId(), index);
+        int day = appointmentStore.getDay(index);
+        if (day != Dates.UNKNOWN) {
+            appointmentsByDay.computeIfAbsent(day, k -> new IntList()).add(index);
+        } else {
+            appointmentsByDateText.computeIfAbsent(date.trim(), k -> new IntList()).add(index);
+        }
+        return index;
+    }
+
+    // Loads appointment records read by BinarySnapshot and indexes them
+    // as insertAppointment would, a whole index at a time: positions are
+    // grouped by key and each key's list is stored once. No appointments
+    // may have been stored yet, and the doctors and patients they refer
+    // to must be loaded.
+    void loadAppointments(int n, List<String> dateTexts, AppointmentStore.ChunkReader reader) throws IOException {
+        appointmentStore.load(n, dateTexts, reader);
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) keys[i] = appointmentStore.getDoctorId(i);
+        groupPositions(keys, n, (id, positions) -> {
+            if (findDoctor(id) == null) throw new IOException("appointment of unknown doctor " + id);
+            appointmentsByDoctor.put(id, positions);
+        });
+        for (int i = 0; i < n; i++) keys[i] = appointmentStore.getPatientId(i);
+        groupPositions(keys, n, (id, positions) -> {
+            if (patientStore.find(id) < 0) throw new IOException("appointment of unknown patient " + id);
+            appointmentsByPatient.put(id, positions);
+        });
+        for (int i = 0; i < n; i++) {
+            int day = keys[i] = appointmentStore.getDay(i);
+            int slot = appointmentStore.getSlot(i);
+            if (day == Dates.UNKNOWN) {
+                appointmentsByDateText.computeIfAbsent(appointmentStore.getDate(i).trim(), k -> new IntList()).add(i);
+            } else if (slot != SlotBook.NONE) {
+                claimLoaded(appointmentStore.getDoctorId(i), day, slot, i);
+            }
+        }
+        groupPositions(keys, n, (day, positions) -> {
+            if (day != Dates.UNKNOWN) appointmentsByDay.put(day, positions);
+        });
+    }
+
+    private interface Group {
+        void accept(int key, IntList positions) throws IOException;
+    }
+
+    // Hands group each distinct key among the first n of keys with the
+    // positions holding it, in increasing order. Keys within a range of a
+    // few times n are counted into place; wider ones are sorted.
+    private static void groupPositions(int[] keys, int n, Group group) throws IOException {
+        if (n == 0) return;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+        if ((long) max - min < 4L * n + 1024) {
+            int[] counts = new int[max - min + 1];
+            for (int i = 0; i < n; i++) counts[keys[i] - min]++;
+            IntList[] lists = new IntList[counts.length];
+            for (int k = 0; k < counts.length; k++) if (counts[k] > 0) lists[k] = new IntList(counts[k]);
+            for (int i = 0; i < n; i++) lists[keys[i] - min].add(i);
+            for (int k = 0; k < lists.length; k++) if (lists[k] != null) group.accept(min + k, lists[k]);
+            return;
+        }
+        long[] keyed = new long[n];
+        for (int i = 0; i < n; i++) keyed[i] = (long) keys[i] << 32 | i;
+        Arrays.sort(keyed);
+        for (int from = 0, to; from < n; from = to) {
+            int key = (int) (keyed[from] >> 32);
+            for (to = from + 1; to < n && (int) (keyed[to] >> 32) == key; ) to++;
+            IntList positions = new IntList(to - from);
+            for (int i = from; i < to; i++) positions.add((int) keyed[i]);
+            group.accept(key, positions);
+        }
+    }
+
+    private static void indexAppointment(IntMap<IntList> index, int key, int position) {
+        IntList list = index.get(key);
+        if (list == null) {
+            list = new IntList();
+            index.put(key, list);
+        }
+        list.add(position);
+    }
+
+    // Appointment positions per doctor, patient or date, in booking order.
+    // The returned lists are live and must not be modified by callers.
+    public IntList getDoctorAppointments(int doctorId) {
+        IntList list = appointmentsByDoctor.get(doctorId);
+        return list != null ? list : IntList.EMPTY;
+    }
+
+    public IntList getPatientAppointments(int patientId) {
+        IntList list = appointmentsByPatient.get(patientId);
+        return list != null ? list : IntList.EMPTY;
+    }
+
+    public IntList getAppointmentsOnDate(String date) {
+        int day = Dates.parse(date);
+        IntList list = day != Dates.UNKNOWN ? appointmentsByDay.get(day) : appointmentsByDateText.get(date.trim());
+        return list != null ? list : IntList.EMPTY;
+    }
+
+    public IntList getAppointmentsOnDay(int day) {
+        IntList list = appointmentsByDay.get(day);
+        return list != null ? list : IntList.EMPTY;
+    }
+
+    // Positions of the appointments from fromDay to toDay inclusive, by
+    // date and then booking order
+    public IntList getAppointmentsBetween(int fromDay, int toDay) {
+        IntList out = new IntList();
+        if (fromDay > toDay) return out;
+        for (IntList day : appointmentsByDay.subMap(fromDay, true, toDay, true).values()) {
+            for (int i = 0; i < day.size(); i++) out.add(day.get(i));
+        }
+        return out;
+    }
+
+    // Unpaid appointments on fromDay or later, by date
+    public IntList getUnpaidFrom(int fromDay) {
+        IntList out = new IntList();
+        for (IntList day : appointmentsByDay.tailMap(fromDay, true).values()) {
+            for (int i = 0; i < day.size(); i++) {
+                int position = day.get(i);
+                if (!appointments.get(position).isPaid()) out.add(position);
+            }
+        }
+        return out;
+    }
+
+    // Add methods
+    public void addDoctor(String name, int age, String specialization, double appointmentFee) {
+        long start = Metrics.start();
+        Doctor d = new Doctor(symbols, doctorCounter.getAndIncrement(), name, age, specialization, appointmentFee);
+        boolean journaled;
+        synchronized (doctorLock) {
+            journaled = log(OP_DOCTOR, d.getId(), name, age, specialization, appointmentFee);
+            if (journaled) insertDoctor(d);
+        }
+        if (journaled) System.out.println("Doctor added successfully!");
+        ADD_DOCTOR.end(start, journaled);
+    }
+
+    public void addPatient(String name, int age, String disease) {
+        long start = Metrics.start();
+        int id = patientCounter.getAndIncrement();
+        boolean journaled;
+        synchronized (patientLock) {
+            journaled = log(OP_PATIENT, id, name, age, disease);
+            if (journaled) insertPatient(id, name, age, disease, false, "");
+        }
+        if (journaled) System.out.println("Patient added successfully!");
+        ADD_PATIENT.end(start, journaled);
+    }
+
+    public void addStaff(String name, int age, String department, String position, double salary) {
+        long start = Metrics.start();
+        Staff s = new Staff(symbols, staffCounter.getAndIncrement(), name, age, department, position, salary);
+        boolean journaled;
+        synchronized (staffLock) {
+            journaled = log(OP_STAFF, s.getId(), name, age, department, position, salary);
+            if (journaled) insertStaff(s);
+        }
+        if (journaled) System.out.println("Staff member added successfully!");
+        ADD_STAFF.end(start, journaled);
+    }
+
+    // An appointment without a time, which takes no slot
+    public void scheduleAppointment(int doctorId, int patientId, String date) {
+        long start = Metrics.start();
+        SCHEDULE.end(start, schedule(doctorId, patientId, date, SlotBook.NONE, false));
+    }
+
+    // Books the half-hour slot starting at time (HH:mm), or the doctor's
+    // first free slot within opening hours that day if time is blank.
+    // Refused if the doctor already has that slot booked.
+    public void scheduleAppointment(int doctorId, int patientId, String date, String time) {
+        long start = Metrics.start();
+        boolean firstFree = time == null || time.isBlank();
+        int slot = firstFree ? SlotBook.NONE : SlotBook.parseTime(time);
+        if (!firstFree && slot == SlotBook.NONE) {
+            System.out.println("❌ Invalid time! Use HH:mm, on the hour or half hour.");
+            SCHEDULE.end(start, false);
+            return;
+        }
+        SCHEDULE.end(start, schedule(doctorId, patientId, date, slot, firstFree));
+    }
+
+    // True if the appointment was booked
+    private boolean schedule(int doctorId, int patientId, String date, int slot, boolean firstFree) {
+        int day = Dates.parse(date);
+        if (day == Dates.UNKNOWN) {
+            System.out.println("❌ Invalid date! Use dd/mm/yyyy or yyyy-mm-dd.");
+            return false;
+        }
+        Doctor doctor = findDoctor(doctorId);
+        Patient patient = findPatient(patientId);
+
+        if (doctor != null && patient != null) {
+            if (firstFree) {
+                // Another session may claim the slot between the two calls
+                do {
+                    slot = slots.firstFree(doctorId, day, OPEN_HOURS);
+                    if (slot == SlotBook.NONE) {
+                        System.out.println("❌ Dr. " + doctor.getName() + " has no free slot on " + date + "!");
+                        return false;
+                    }
+                } while (!slots.claim(doctorId, day, slot));
+            } else if (slot != SlotBook.NONE && !slots.claim(doctorId, day, slot)) {
+                System.out.println("❌ Dr. " + doctor.getName() + " is already booked on " + date +
+                        " at " + SlotBook.formatTime(slot) + "!");
+                return false;
+            }
+            Appointment appointment;
+            synchronized (appointmentLock) {
+                if (!log(OP_APPOINTMENT, appointments.size(), doctorId, patientId, date, SlotBook.formatTime(slot))) {
+                    if (slot != SlotBook.NONE) slots.release(doctorId, day, slot);
+                    return false;
+                }
+                appointment = appointmentStore.view(storeAppointment(doctor, patient, date, slot, false));
+                ledger.booked(appointment);
+            }
+            System.out.println("✅ Appointment scheduled successfully!");
+            System.out.println("   Details: Dr. " + doctor.getName() + " with " + patient.getName() +
+                    " on " + appointment.getDateAndTime() + " | Fee: $" + doctor.getAppointmentFee());
+            return true;
+        } else {
+            System.out.println("❌ Invalid Doctor ID or Patient ID!");
+            return false;
+        }
+    }
+
+    // A doctor and the slot found for them by findFreeSlot
+    static final class FreeSlot {
+        final Doctor doctor;
+        final int day;
+        final int slot;
+
+        FreeSlot(Doctor doctor, int day, int slot) {
+            this.doctor = doctor;
+            this.day = day;
+            this.slot = slot;
+        }
+    }
+
+    // Earliest free slot within opening hours with any doctor of the
+    // specialization, at or after fromSlot on fromDay and looking
+    // SLOT_SEARCH_DAYS days ahead; null if there is none. Each doctor costs
+    // one word per day: once a candidate is found the mask shrinks to the
+    // slots before it, so later doctors can only win with an earlier slot.
+    public FreeSlot findFreeSlot(String specialization, int fromDay, int fromSlot) {
+        int key = symbols.findKey(specialization);
+        List<Doctor> candidates = key != SymbolTable.NONE ? doctorsBySpecialization.get(key) : null;
+        if (candidates == null || candidates.isEmpty()) return null;
+        for (int day = fromDay; day < fromDay + SLOT_SEARCH_DAYS; day++) {
+            long allowed = day == fromDay ? OPEN_HOURS & ~SlotBook.range(0, fromSlot) : OPEN_HOURS;
+            if (allowed == 0) continue;
+            int earliest = Long.numberOfTrailingZeros(allowed);
+            Doctor best = null;
+            int bestSlot = SlotBook.NONE;
+            for (Doctor d : candidates) {
+                int slot = slots.firstFree(d.getId(), day, allowed);
+                if (slot == SlotBook.NONE) continue;
+                best = d;
+                bestSlot = slot;
+                if (slot == earliest) break;
+                allowed &= SlotBook.range(0, slot);
+            }
+            if (best != null) return new FreeSlot(best, day, bestSlot);
+        }
+        return null;
+    }
+
+    // Show methods
+    public void showDoctors() { showListing(Listing.DOCTORS, 0, 0); }
+    public void showPatients() { showListing(Listing.PATIENTS, 0, 0); }
+    public void showStaff() { showListing(Listing.STAFF, 0, 0); }
+    public void showAppointments() { showListing(Listing.APPOINTMENTS, 0, 0); }
+
+    // Rows per page in interactive listings (-Dhospital.page.size, 0 = all)
+    static final int PAGE_SIZE = Integer.getInteger("hospital.page.size", 50);
+
+    enum Listing {
+        DOCTORS("showDoctors"), PATIENTS("showPatients"), STAFF("showStaff"), APPOINTMENTS("showAppointments");
+
+        final Metrics.Operation metrics;
+
+        Listing(String operation) { this.metrics = Metrics.operation(operation); }
+    }
+
+    private interface RowFormat<T> {
+        void write(ReportWriter w, T row) throws IOException;
+    }
+
+    // Prints rows [offset, offset + limit) of a listing (limit 0 = all) and
+    // returns the offset of the next page, or -1 when no rows are left
+    public int showListing(Listing listing, int offset, int limit) {
+        long start = Metrics.start();
+        boolean ok = false;
+        ReportWriter w = new ReportWriter(System.out);
+        try {
+            int next = renderListing(listing, w, offset, limit);
+            ok = true;
+            return next;
+        } catch (IOException e) {
+            System.out.println("❌ Error writing listing: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                w.flush();
+            } catch (IOException ignored) {
+                // reported above
+            }
+            listing.metrics.end(start, ok);
+        }
+    }
+
+    // Writes a whole listing to file in the same layout as on screen
+    public void exportListing(Listing listing, String file) {
+        long start = System.nanoTime();
+        try (ReportWriter w = new ReportWriter(FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            renderListing(listing, w, 0, 0);
+        } catch (IOException e) {
+            System.out.println("❌ Error exporting report: " + e.getMessage());
+            return;
+        }
+        System.out.printf("✅ Report written to %s in %.2f s%n", file, (System.nanoTime() - start) / 1e9);
+    }
+
+    private int renderListing(Listing listing, ReportWriter w, int offset, int limit) throws IOException {
+        switch (listing) {
+            case DOCTORS:
+                return render(w, "=== LIST OF DOCTORS ===", "No doctors available.",
+                        "ID   Name            Age  Specialization      Fee",
+                        "-------------------------------------------------",
+                        "=======================", doctors, offset, limit, (out, d) -> out
+                        .text("ID: ").left(d.getId(), 3).text(" | Name: ").left(d.getName(), 15)
+                        .text(" | Age: ").left(d.getAge(), 3).text(" | Specialization: ").left(d.getSpecialization(), 15)
+                        .text(" | Fee: $").leftFixed2(d.getAppointmentFee(), 6));
+            case PATIENTS:
+                return render(w, "=== LIST OF PATIENTS ===", "No patients available.", PATIENT_HEADER, PATIENT_RULE,
+                        "=======================", patients, offset, limit, PATIENT_ROW);
+            case STAFF:
+                return render(w, "=== LIST OF STAFF MEMBERS ===", "No staff members available.", STAFF_HEADER, STAFF_RULE,
+                        "===========================", staffMembers, offset, limit, STAFF_ROW);
+            case APPOINTMENTS:
+                return render(w, "=== SCHEDULED APPOINTMENTS ===", "No appointments scheduled.",
+                        APPOINTMENT_HEADER, APPOINTMENT_RULE,
+                        "==============================", appointments, offset, limit, APPOINTMENT_ROW);
+            default:
+                throw new IllegalArgumentException("Unknown listing " + listing);
+        }
+    }
+
+    private static final RowFormat<Patient> PATIENT_ROW = (out, p) -> out
+            .text("ID: ").left(p.getId(), 3).text(" | Name: ").left(p.getName(), 15)
+            .text(" | Age: ").left(p.getAge(), 3).text(" | Disease: ").left(p.getDisease(), 15)
+            .text(" | Test: ").left(p.isTestRequired() ? "Yes" : "No", 5)
+            .text(" | Prescription: ").left(p.getPrescription(), 20);
+
+    private static final String PATIENT_HEADER = "ID   Name            Age  Disease           Test  Prescription";
+    private static final String PATIENT_RULE = "-------------------------------------------------------------";
+
+    private static final RowFormat<Staff> STAFF_ROW = (out, st) -> out
+            .text("ID: ").left(st.getId(), 3).text(" | Name: ").left(st.getName(), 15)
+            .text(" | Age: ").left(st.getAge(), 3).text(" | Department: ").left(st.getDepartment(), 15)
+            .text(" | Position: ").left(st.getPosition(), 15).text(" | Salary: $").leftFixed2(st.getSalary(), 8);
+
+    private static final String STAFF_HEADER = "ID   Name            Age  Department        Position         Salary";
+    private static final String STAFF_RULE = "------------------------------------------------------------------";
+
+    private static final RowFormat<Appointment> APPOINTMENT_ROW = (out, a) -> out
+            .text("Date: ").left(a.getDateAndTime(), 10).text(" | Dr. ").left(a.getDoctor().getName(), 15)
+            .text(" | Patient: ").left(a.getPatient().getName(), 15)
+            .text(" | Fee: $").leftFixed2(a.getDoctor().getAppointmentFee(), 6)
+            .text(" | Paid: ").left(a.isPaid() ? "Yes" : "No", 3);
+
+    private static final String APPOINTMENT_HEADER = "Date       Doctor          Patient         Fee      Paid";
+    private static final String APPOINTMENT_RULE = "--------------------------------------------------------";
+
+    // Pages through appointments picked by one of the date queries
+    public int showAppointments(String title, IntList positions, int offset, int limit) {
+        List<Appointment> rows = new AbstractList<Appointment>() {
+            @Override
+            public Appointment get(int i) { return appointments.get(positions.get(i)); }
+
+            @Override
+            public int size() { return positions.size(); }
+        };
+        return showPage(SHOW_SELECTION, "=== " + title + " ===", "No appointments found.", APPOINTMENT_HEADER,
+                APPOINTMENT_RULE, "=".repeat(title.length() + 8), rows, offset, limit, APPOINTMENT_ROW);
+    }
+
+    // render to System.out, timed by op (null for none); -1 on an error
+    private static <T> int showPage(Metrics.Operation op, String title, String empty, String header, String rule,
+                                    String footer, List<T> rows, int offset, int limit, RowFormat<T> format) {
+        long start = Metrics.start();
+        boolean ok = false;
+        ReportWriter w = new ReportWriter(System.out);
+        try {
+            int next = render(w, title, empty, header, rule, footer, rows, offset, limit, format);
+            ok = true;
+            return next;
+        } catch (IOException e) {
+            System.out.println("❌ Error writing listing: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                w.flush();
+            } catch (IOException ignored) {
+                // reported above
+            }
+            if (op != null) op.end(start, ok);
+        }
+    }
+
+    // One day's appointments grouped by doctor (doctorId 0 = every doctor)
+    public void showSchedule(int day, int doctorId) {
+        long start = Metrics.start();
+        boolean ok = false;
+        IntList onDay = getAppointmentsOnDay(day);
+        Map<Integer, IntList> byDoctor = new TreeMap<>();
+        for (int i = 0; i < onDay.size(); i++) {
+            int position = onDay.get(i);
+            int id = appointments.get(position).getDoctor().getId();
+            if (doctorId == 0 || id == doctorId) byDoctor.computeIfAbsent(id, k -> new IntList()).add(position);
+        }
+        ReportWriter w = new ReportWriter(System.out);
+        try {
+            w.newline().line("=== SCHEDULE FOR " + Dates.format(day) + " ===");
+            if (byDoctor.isEmpty()) w.line("No appointments scheduled.");
+            for (Map.Entry<Integer, IntList> e : byDoctor.entrySet()) {
+                Doctor d = findDoctor(e.getKey());
+                IntList list = e.getValue();
+                w.line("Dr. " + d.getName() + " (" + d.getSpecialization() + ") - " + list.size() + " appointment(s)");
+                for (int i = 0; i < list.size(); i++) {
+                    APPOINTMENT_ROW.write(w.text("  "), appointments.get(list.get(i)));
+                    w.newline();
+                }
+            }
+            w.line("================================");
+            w.flush();
+            ok = true;
+        } catch (IOException e) {
+            System.out.println("❌ Error writing listing: " + e.getMessage());
+        }
+        SHOW_SCHEDULE.end(start, ok);
+    }
+
+    // Same layout as the original println loops; a partial page also says
+    // which rows it shows
+    private static <T> int render(ReportWriter w, String title, String empty, String header, String rule,
+                                  String footer, List<T> rows, int offset, int limit, RowFormat<T> format) throws IOException {
+        int size = rows.size();
+        int end = limit > 0 ? (int) Math.min(size, (long) offset + limit) : size;
+        if (offset == 0) {
+            w.newline().line(title);
+            if (size == 0) {
+                w.line(empty);
+            } else {
+                w.line(header).line(rule);
+            }
+        }
+        for (int i = offset; i < end; i++) {
+            format.write(w, rows.get(i));
+            w.newline();
+        }
+        boolean more = end < size;
+        if (more || offset > 0) w.line("Showing " + (offset + 1) + "-" + end + " of " + size);
+        if (!more) w.line(footer);
+        return more ? end : -1;
+    }
+
+    public void showAppointmentFees() {
+        System.out.println("\n=== APPOINTMENT FEES ===");
+        if (doctors.isEmpty()) {
+            System.out.println("No doctors available.");
+        } else {
+            System.out.println("Doctor            Specialization      Fee");
+            System.out.println("-----------------------------------------");
+            for (Doctor doctor : doctors) {
+                System.out.printf("%-15s   %-15s   $%-6.2f%n",
+                        doctor.getName(), doctor.getSpecialization(), doctor.getAppointmentFee());
+            }
+        }
+        System.out.println("=======================");
+    }
+
+    // Read from the fee ledger, so it costs the same however many
+    // appointments there are
+    public void showBillingSummary() {
+        long start = Metrics.start();
+        FeeLedger ledger = this.ledger;
+        FeeLedger.Totals total = ledger.getTotal();
+        System.out.println("\n=== BILLING SUMMARY ===");
+        System.out.println("Collected:   $" + FeeLedger.format(total.paidCents) + " (" + total.paidCount + " appointments)");
+        System.out.println("Outstanding: $" + FeeLedger.format(total.outstandingCents) + " (" + total.outstandingCount + " appointments)");
+
+        System.out.println("\nSpecialization      Collected       Outstanding     Unpaid");
+        System.out.println("-----------------------------------------------------------");
+        for (FeeLedger.Totals t : ledger.getSpecializations()) {
+            System.out.printf("%-18s  $%-14s $%-14s %d%n", t.name,
+                    FeeLedger.format(t.paidCents), FeeLedger.format(t.outstandingCents), t.outstandingCount);
+        }
+
+        System.out.println("\nNext 7 days         Collected       Outstanding     Unpaid");
+        System.out.println("-----------------------------------------------------------");
+        int today = Dates.today();
+        for (int day = today; day < today + 7; day++) {
+            FeeLedger.Totals t = ledger.getDay(day);
+            System.out.printf("%-18s  $%-14s $%-14s %d%n", Dates.format(day),
+                    FeeLedger.format(t.paidCents), FeeLedger.format(t.outstandingCents), t.outstandingCount);
+        }
+        System.out.println("=======================");
+        SHOW_BILLING.end(start, true);
+    }
+
+    // Calls, errors and latencies of each timed operation since startup
+    public void showStats() {
+        if (!Metrics.ENABLED) {
+            System.out.println("Metrics are off (started with -Dhospital.metrics=false).");
+            return;
+        }
+        System.out.println("\n=== OPERATION STATS ===");
+        System.out.println("Operation                   Calls    Errors   Mean ms   p50 ms    p90 ms    p99 ms    Max ms");
+        System.out.println("---------------------------------------------------------------------------------------------");
+        for (Metrics.Operation op : Metrics.operations()) {
+            if (op.getCount() == 0) continue;
+            System.out.printf("%-26s  %-7d  %-7d  %-8.3f  %-8.3f  %-8.3f  %-8.3f  %.3f%n", op.getName(),
+                    op.getCount(), op.getErrors(), op.getMeanMicros() / 1e3, op.getP50Micros() / 1e3,
+                    op.getP90Micros() / 1e3, op.getP99Micros() / 1e3, op.getMaxMicros() / 1e3);
+        }
+        System.out.println("=======================");
+    }
+
+    // Doctor functions
+    public void showDoctorPatients(int doctorId) {
+        showDoctorPatients(doctorId, 0, 0);
+    }
+
+    // A page of the patient of each of a doctor's appointments, as
+    // showListing prints them; -1 when none are left
+    public int showDoctorPatients(int doctorId, int offset, int limit) {
+        Doctor doctor = findDoctor(doctorId);
+        if (doctor == null) {
+            SHOW_DOCTOR_PATIENTS.end(Metrics.start(), false);
+            System.out.println("❌ Doctor not found!");
+            return -1;
+        }
+        IntList doctorAppointments = getDoctorAppointments(doctorId);
+        List<Patient> rows = new AbstractList<Patient>() {
+            @Override
+            public Patient get(int i) { return appointments.get(doctorAppointments.get(i)).getPatient(); }
+
+            @Override
+            public int size() { return doctorAppointments.size(); }
+        };
+        return showPage(SHOW_DOCTOR_PATIENTS, "=== PATIENTS FOR DR. " + doctor.getName() + " ===",
+                "No patients scheduled for this doctor.", PATIENT_HEADER, PATIENT_RULE,
+                "==================================", rows, offset, limit, PATIENT_ROW);
+    }
+
+    public void setTestRequired(int patientId, boolean testRequired) {
+        Patient patient = findPatient(patientId);
+        if (patient != null) {
+            synchronized (patientLock) {
+                if (!log(OP_TEST, patientId, testRequired)) return;
+                patient.setTestRequired(testRequired);
+            }
+            System.out.println("Test requirement updated for patient: " + patient.getName());
+        } else {
+            System.out.println("❌ Patient not found!");
+        }
+    }
+
+    public void setPrescription(int patientId, String prescription) {
+        Patient patient = findPatient(patientId);
+        if (patient != null) {
+            synchronized (patientLock) {
+                if (!log(OP_PRESCRIPTION, patientId, prescription)) return;
+                patient.setPrescription(prescription);
+            }
+            System.out.println("Prescription updated for patient: " + patient.getName());
+        } else {
+            System.out.println("❌ Patient not found!");
+        }
+    }
+
+    public void takeAppointmentFee(int appointmentIndex) {
+        long start = Metrics.start();
+        TAKE_FEE.end(start, collectFee(appointmentIndex));
+    }
+
+    // True if the fee was collected
+    private boolean collectFee(int appointmentIndex) {
+        if (appointmentIndex >= 0 && appointmentIndex < appointments.size()) {
+            Appointment appointment = appointments.get(appointmentIndex);
+            synchronized (appointmentLock) {
+                if (appointment.isPaid()) {
+                    System.out.println("❌ Fee already collected for this appointment!");
+                    return false;
+                }
+                if (!log(OP_FEE, appointmentIndex)) return false;
+                appointment.setPaid(true);
+                ledger.paid(appointment);
+            }
+            System.out.println("Fee collected for appointment with " + appointment.getPatient().getName() +
+                    " on " + appointment.getDateAndTime() + " | Amount: $" + appointment.getFee());
+            return true;
+        } else {
+            System.out.println("❌ Invalid appointment index!");
+            return false;
+        }
+    }
+
+    // Bulk import (see BulkImporter): a batch of new records is journaled
+    // with one flush and then made visible, without printing per record.
+    // False, with nothing added, if the journal could not be written.
+    boolean importDoctors(List<Doctor> batch) {
+        synchronized (doctorLock) {
+            boolean journaled = logBatch(() -> {
+                for (Doctor d : batch) {
+                    append(OP_DOCTOR, d.getId(), d.getName(), d.getAge(), d.getSpecialization(), d.getAppointmentFee());
+                }
+            });
+            if (!journaled) return false;
+            for (Doctor d : batch) insertDoctor(d);
+            return true;
+        }
+    }
+
+    boolean importPatients(PatientStore.Rows batch) {
+        synchronized (patientLock) {
+            boolean journaled = logBatch(() -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    int id = batch.ids.get(i);
+                    append(OP_PATIENT, id, batch.names.get(i), batch.ages.get(i), symbols.text(batch.diseases.get(i)));
+                    if (batch.testRequired.get(i)) append(OP_TEST, id, true);
+                    if (!batch.prescriptions.get(i).isEmpty()) append(OP_PRESCRIPTION, id, batch.prescriptions.get(i));
+                }
+            });
+            if (!journaled) return false;
+            insertPatients(batch);
+            return true;
+        }
+    }
+
+    void insertPatients(PatientStore.Rows batch) {
+        for (int i = 0; i < batch.size(); i++) patientNames.add(patientStore.add(batch, i), batch.names.get(i));
+    }
+
+    // Loads n patients as columns read by BinarySnapshot (see
+    // PatientStore.load); no patients may have been stored yet
+    void loadPatients(int n, PatientStore.ColumnReader reader) throws IOException {
+        patientStore.load(n, reader);
+        for (int row = 0; row < n; row++) patientNames.add(row, patientStore.getName(row));
+    }
+
+    boolean importStaff(List<Staff> batch) {
+        synchronized (staffLock) {
+            boolean journaled = logBatch(() -> {
+                for (Staff s : batch) {
+                    append(OP_STAFF, s.getId(), s.getName(), s.getAge(), s.getDepartment(), s.getPosition(), s.getSalary());
+                }
+            });
+            if (!journaled) return false;
+            for (Staff s : batch) insertStaff(s);
+            return true;
+        }
+    }
+
+    // Staff functions
+    public void showAllStaff() {
+        showStaff();
+    }
+
+    public void searchStaffByDepartment(String department) {
+        searchStaffByDepartment(department, 0, 0);
+    }
+
+    // A page of the staff of a department; -1 when none are left
+    public int searchStaffByDepartment(String department, int offset, int limit) {
+        int key = symbols.findKey(department);
+        Department dept = key != SymbolTable.NONE ? departments.get(key) : null;
+        List<Staff> members = dept != null ? dept.getMembers() : Collections.emptyList();
+        return showPage(null, "=== STAFF IN DEPARTMENT: " + department.toUpperCase() + " ===",
+                "No staff members found in " + department + " department.", STAFF_HEADER, STAFF_RULE,
+                "==================================", members, offset, limit, STAFF_ROW);
+    }
+
+    // Patients and doctors whose names best match query (see NameIndex):
+    // whole words first, then words starting with the query, then words
+    // a letter or two off, at most limit of them
+    public List<Patient> searchPatients(String query, int limit) {
+        long start = Metrics.start();
+        IntList rows = patientNames.search(query, limit);
+        List<Patient> found = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) found.add(patientStore.view(rows.get(i)));
+        SEARCH_PATIENTS.end(start, true);
+        return found;
+    }
+
+    public List<Doctor> searchDoctors(String query, int limit) {
+        long start = Metrics.start();
+        IntList positions = doctorNames.search(query, limit);
+        List<Doctor> found = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) found.add(doctors.get(positions.get(i)));
+        SEARCH_DOCTORS.end(start, true);
+        return found;
+    }
+
+    public void showPatientSearch(String query) {
+        showSearch("PATIENTS", query, searchPatients(query, SEARCH_LIMIT));
+    }
+
+    public void showDoctorSearch(String query) {
+        showSearch("DOCTORS", query, searchDoctors(query, SEARCH_LIMIT));
+    }
+
+    private static void showSearch(String kind, String query, List<? extends Person> found) {
+        if (query.trim().isEmpty()) {
+            System.out.println("❌ Enter at least part of a name!");
+            return;
+        }
+        System.out.println("\n=== " + kind + " MATCHING: " + query.trim().toUpperCase() + " ===");
+        if (found.isEmpty()) {
+            System.out.println("No " + kind.toLowerCase() + " found matching " + query.trim() + ".");
+        }
+        for (Person p : found) {
+            System.out.println(p);
+        }
+        if (found.size() == SEARCH_LIMIT) {
+            System.out.println("(first " + SEARCH_LIMIT + " matches; type more of the name to narrow them)");
+        }
+        System.out.println("==================================");
+    }
+
+    // Patients matching filter (see PatientFilter), counted from the
+    // bitmap indexes without listing them
+    public int countPatients(PatientFilter filter) {
+        long start = Metrics.start();
+        int count = patientStore.count(filter);
+        FILTER_PATIENTS.end(start, true);
+        return count;
+    }
+
+    // Patients matching filter in the order they were added, found as the
+    // stream is consumed
+    public Stream<Patient> findPatients(PatientFilter filter) {
+        return patientStore.rows(filter).mapToObj(patientStore::view);
+    }
+
+    // The patients matching a filter, for paging through them: holds the
+    // number that matched when it was made and where the last page ended,
+    // so the next page resumes the scan there rather than at row 0
+    public static final class PatientCursor {
+        private final PatientFilter filter;
+        private final int total;
+        private int offset;
+        private int row;
+
+        PatientCursor(PatientFilter filter, int total) {
+            this.filter = filter;
+            this.total = total;
+        }
+
+        public int total() { return total; }
+    }
+
+    public PatientCursor findPatientPages(PatientFilter filter) {
+        return new PatientCursor(filter, countPatients(filter));
+    }
+
+    // Prints a page of the patients matching filter, as showListing does
+    public int showPatients(PatientFilter filter, int offset, int limit) {
+        return showPatients(findPatientPages(filter), offset, limit);
+    }
+
+    // Prints a page of the cursor's patients; a page at or after the one
+    // shown last is found from where that one ended
+    public int showPatients(PatientCursor cursor, int offset, int limit) {
+        if (offset < cursor.offset) cursor.offset = cursor.row = 0;
+        List<Patient> page = new ArrayList<>();
+        PrimitiveIterator.OfInt matches = patientStore.rows(cursor.filter, cursor.row).iterator();
+        while (matches.hasNext() && (limit <= 0 || cursor.offset < offset + limit)) {
+            int row = matches.nextInt();
+            if (cursor.offset++ >= offset) page.add(patientStore.view(row));
+            cursor.row = row + 1;
+        }
+        int total = cursor.total;
+        // Only the page is fetched; the rest of the list is never read
+        List<Patient> rows = new AbstractList<Patient>() {
+            @Override
+            public Patient get(int i) { return page.get(i - offset); }
+
+            @Override
+            public int size() {
+                boolean last = limit <= 0 || page.size() < limit;
+                return last ? offset + page.size() : Math.max(total, offset + page.size());
+            }
+        };
+        String title = "PATIENTS MATCHING: " + cursor.filter.toString().toUpperCase();
+        return showPage(null, "=== " + title + " ===", "No patients match.", PATIENT_HEADER, PATIENT_RULE,
+                "=".repeat(title.length() + 8), rows, offset, limit, PATIENT_ROW);
+    }
+
+    // Departments sorted by name, with head counts from the index
+    public List<Department> getDepartments() {
+        List<Department> list = new ArrayList<>(departmentList);
+        list.sort(Comparator.comparing(Department::getName, String.CASE_INSENSITIVE_ORDER));
+        return list;
+    }
+
+    public void showDepartments() {
+        System.out.println("\n=== DEPARTMENTS ===");
+        if (departmentList.isEmpty()) {
+            System.out.println("No departments available.");
+        } else {
+            System.out.println("Department        Staff");
+            System.out.println("-----------------------");
+            for (Department dept : getDepartments()) {
+                System.out.printf("%-15s   %d%n", dept.getName(), dept.getHeadCount());
+            }
+        }
+        System.out.println("===================");
+    }
+
+    // ---------------- Save data ----------------
+    // With a journal open, saving only forces the journal to disk; once the
+    // journal has grown past a quarter of the snapshot it is compacted.
+    public void saveData() {
+        long start = Metrics.start();
+        boolean ok = false;
+        long journaled;
+        try {
+            synchronized (journalLock) {
+                if (journal == null) {
+                    journaled = -1;
+                } else {
+                    journal.sync();
+                    journaled = journal.size();
+                }
+            }
+            if (journaled < 0 || (checkpointer == null && journaled > Math.max(MIN_COMPACT_BYTES, snapshotBytes / 4))) {
+                ok = compact();
+            } else {
+                System.out.println("✅ Changes saved (" + journaled + " bytes journaled)");
+                ok = true;
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error saving data: " + e.getMessage());
+        }
+        SAVE.end(start, ok);
+    }
+
+    private static final long MIN_COMPACT_BYTES = 1L << 20;
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // Folds every change into fresh CSV files and empties the journal;
+    // false if that failed
+    public boolean compact() {
+        try {
+            checkpoint(true);
+            System.out.println(BINARY_SNAPSHOT ? "✅ Data saved to " + BINARY_FILE + "!" : "✅ Data saved to CSV!");
+            return true;
+        } catch (IOException e) {
+            System.out.println("❌ Error saving data: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Record lists as they were when a checkpoint started, and the
+    // patient columns and appointment records for a binary snapshot
+    private static class Snapshot {
+        final List<Doctor> doctors;
+        final List<Patient> patients;
+        final List<Staff> staff;
+        final List<Appointment> appointments;
+        final PatientStore.Columns patientColumns;
+        final AppointmentStore.Records appointmentRecords;
+
+        Snapshot(Hospital h) {
+            doctors = new ArrayList<>(h.doctors);
+            patientColumns = h.patientStore.columns();
+            patients = h.patientStore.asList(patientColumns.size);
+            staff = new ArrayList<>(h.staffMembers);
+            appointmentRecords = h.appointmentStore.records();
+            appointments = h.appointmentStore.asList(appointmentRecords.size);
+        }
+    }
+
+    private final Object checkpointLock = new Object();
+    private volatile Checkpointer checkpointer;
+
+    private interface Locked<T> {
+        T run() throws IOException;
+    }
+
+    // Runs body with every writer lock held, so no record changes meanwhile
+    private <T> T withAllLocks(Locked<T> body) throws IOException {
+        synchronized (doctorLock) {
+            synchronized (patientLock) {
+                synchronized (staffLock) {
+                    synchronized (appointmentLock) {
+                        synchronized (journalLock) {
+                            return body.run();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Writes a new snapshot when anything changed since the last one (or
+    // always, when forced). The record lists are copied and the journal is
+    // rotated into a numbered segment while holding every writer lock; the
+    // slow part, writing the files, runs without it so the menus keep
+    // working. Changes made meanwhile go to the new journal. Segments are
+    // deleted only after the snapshot is in place. Returns false when there
+    // was nothing to write.
+    boolean checkpoint(boolean force) throws IOException {
+        synchronized (checkpointLock) {
+            Path[] segment = new Path[1];
+            Snapshot snap = withAllLocks(() -> {
+                boolean dirty = journal == null || !journal.isEmpty() || !journalSegments().isEmpty();
+                if (!dirty && !force) return null;
+                if (journal != null && !journal.isEmpty()) segment[0] = rotateJournal();
+                return new Snapshot(this);
+            });
+            if (snap == null) return false;
+            if (BINARY_SNAPSHOT) {
+                BinarySnapshot.write(Paths.get(BINARY_FILE), symbols, snap.doctors, snap.patientColumns, snap.staff,
+                        snap.appointmentRecords);
+            } else {
+                writeSnapshot(snap);
+            }
+            for (Path old : journalSegments()) {
+                if (segment[0] == null || segmentNumber(old) <= segmentNumber(segment[0])) Files.deleteIfExists(old);
+            }
+            snapshotBytes = snapshotSize();
+            return true;
+        }
+    }
+
+    // Moves the active journal aside as the next numbered segment
+    private Path rotateJournal() throws IOException {
+        List<Path> segments = journalSegments();
+        long next = segments.isEmpty() ? 1 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+        Path segment = Paths.get(JOURNAL_FILE + "." + next);
+        journal.sync();
+        journal.close();
+        try {
+            Files.move(Paths.get(JOURNAL_FILE), segment, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            journal = new Journal(Paths.get(JOURNAL_FILE));
+        }
+        return segment;
+    }
+
+    // Rotated journal segments, oldest first
+    private static List<Path> journalSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("."), JOURNAL_FILE + ".*")) {
+            for (Path p : dir) {
+                if (segmentNumber(p) > 0) segments.add(p);
+            }
+        }
+        segments.sort(Comparator.comparingLong(Hospital::segmentNumber));
+        return segments;
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(JOURNAL_FILE.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Starts background checkpoints every intervalSeconds; a checkpoint
+    // slower than maxMillis is reported
+    public void startCheckpointer(long intervalSeconds, long maxMillis) {
+        if (checkpointer != null || intervalSeconds <= 0) return;
+        checkpointer = new Checkpointer(this, intervalSeconds, maxMillis);
+        checkpointer.start();
+    }
+
+    public void showCheckpointStatus() {
+        System.out.println("\n=== CHECKPOINT STATUS ===");
+        if (checkpointer == null) {
+            System.out.println("Background checkpoints are off.");
+        } else {
+            System.out.println(checkpointer.status());
+        }
+        long journaled;
+        synchronized (journalLock) {
+            journaled = journal == null ? -1 : journal.size();
+        }
+        System.out.println("Journal: " + (journaled < 0 ? "off" : journaled + " bytes"));
+        System.out.println("=========================");
+    }
+
+    // Stops background checkpoints and closes the journal once changes in
+    // progress are done
+    public void close() {
+        if (checkpointer != null) checkpointer.stop();
+        credentials.close();
+        try {
+            withAllLocks(() -> {
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } finally {
+                        journal = null;
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            System.out.println("❌ Error closing journal: " + e.getMessage());
+        }
+    }
+
+    // Writes every CSV file to a temp file, forces it to disk, then renames
+    // it over the old one, so a crash never leaves a half-written file.
+    private static void writeSnapshot(Snapshot snap) throws IOException {
+        // Doctors
+        try (CsvWriter w = snapshotWriter("doctors.csv")) {
+            w.header("ID", "Name", "Age", "Specialization", "Fee");
+            for (Doctor d : snap.doctors) {
+                w.field(d.getId()).field(d.getName()).field(d.getAge())
+                        .field(d.getSpecialization()).fieldFixed2(d.getAppointmentFee()).endRecord();
+            }
+            w.sync();
+        }
+
+        // Patients
+        try (CsvWriter w = snapshotWriter("patients.csv")) {
+            w.header("ID", "Name", "Age", "Disease", "TestRequired", "Prescription");
+            for (Patient p : snap.patients) {
+                w.field(p.getId()).field(p.getName()).field(p.getAge())
+                        .field(p.getDisease()).field(p.isTestRequired()).field(p.getPrescription()).endRecord();
+            }
+            w.sync();
+        }
+
+        // Staff
+        try (CsvWriter w = snapshotWriter("staff.csv")) {
+            w.header("ID", "Name", "Age", "Department", "Position", "Salary");
+            for (Staff s : snap.staff) {
+                w.field(s.getId()).field(s.getName()).field(s.getAge())
+                        .field(s.getDepartment()).field(s.getPosition()).fieldFixed2(s.getSalary()).endRecord();
+            }
+            w.sync();
+        }
+
+        // Appointments
+        try (CsvWriter w = snapshotWriter("appointments.csv")) {
+            w.header("DoctorID", "PatientID", "Date", "Paid", "Time");
+            StringBuilder date = new StringBuilder();
+            for (Appointment a : snap.appointments) {
+                date.setLength(0);
+                w.field(a.getDoctorId()).field(a.getPatientId())
+                        .field(a.appendDate(date)).field(a.isPaid()).field(a.getTime()).endRecord();
+            }
+            w.sync();
+        }
+
+        for (String f : SNAPSHOT_FILES) {
+            Files.move(Paths.get(f + TMP_SUFFIX), Paths.get(f),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Writes the CSV files, e.g. to hand data to another tool in binary mode
+    public void exportCsv() {
+        try {
+            writeSnapshot(withAllLocks(() -> new Snapshot(this)));
+            System.out.println("✅ Data exported to CSV!");
+        } catch (IOException e) {
+            System.out.println("❌ Error exporting data: " + e.getMessage());
+        }
+    }
+
+    // Sizes the record lists and indexes up front for a known record count
+    void presize(int doctorCount, int patientCount, int staffCount) {
+        doctors = new AppendOnlyList<>(doctorCount);
+        patientStore = new PatientStore(symbols, patientCount);
+        patients = patientStore.asList();
+        staffMembers = new AppendOnlyList<>(staffCount);
+        doctorsById = new IntMap<>(doctorCount);
+        staffById = new IntMap<>(staffCount);
+        appointmentsByDoctor = new IntMap<>(doctorCount);
+        appointmentsByPatient = new IntMap<>(patientCount);
+    }
+
+    private static CsvWriter snapshotWriter(String file) throws IOException {
+        return new CsvWriter(FileChannel.open(Paths.get(file + TMP_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    private static long snapshotSize() {
+        if (BINARY_SNAPSHOT) return new File(BINARY_FILE).length();
+        long total = 0;
+        for (String f : SNAPSHOT_FILES) {
+            File file = new File(f);
+            total += file.length();
+        }
+        return total;
+    }
+
+    // ---------------- Journal ----------------
+    private static final char OP_DOCTOR = 'D', OP_PATIENT = 'P', OP_STAFF = 'S', OP_APPOINTMENT = 'A',
+            OP_TEST = 'T', OP_PRESCRIPTION = 'R', OP_FEE = 'F';
+
+    private final StringBuilder record = new StringBuilder(128);
+
+    // Appends one mutation to the journal as a CSV record
+    // False if the journal could not be written
+    private boolean log(char op, Object... fields) {
+        return logBatch(() -> append(op, fields));
+    }
+
+    private interface JournalWrites {
+        void write() throws IOException;
+    }
+
+    // Runs a group of append() calls under the journal lock and hands them
+    // to the operating system together; false if that failed, or if there
+    // is no journal (it failed to open, or the Hospital was closed)
+    private boolean logBatch(JournalWrites writes) {
+        synchronized (journalLock) {
+            if (journal == null) {
+                System.out.println("❌ The journal is not open, changes cannot be saved.");
+                return false;
+            }
+            try {
+                writes.write();
+                journal.flush();
+                return true;
+            } catch (IOException e) {
+                System.out.println("❌ Error writing journal: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // Caller holds journalLock and has checked that the journal is open
+    private void append(char op, Object... fields) throws IOException {
+        StringBuilder sb = record;
+        sb.setLength(0);
+        sb.append(op);
+        for (Object f : fields) {
+            sb.append(',');
+            if (f instanceof String) CsvWriter.escape((String) f, sb); else sb.append(f);
+        }
+        journal.append(sb);
+    }
+
+    // Replays journal records on top of the loaded snapshot. Every record
+    // carries the IDs or position it applies to, so replaying a record the
+    // snapshot already contains changes nothing. An appointment is only
+    // added at the position it was journaled at; once one is missing, later
+    // ones are skipped and reported rather than stored one place early,
+    // where fee records would mark the wrong appointment paid.
+    private void replayJournal() {
+        int skipped = 0;
+        List<String> files = new ArrayList<>();
+        try {
+            for (Path segment : journalSegments()) files.add(segment.toString());
+        } catch (IOException e) {
+            System.out.println("❌ Error reading journal: " + e.getMessage());
+        }
+        files.add(JOURNAL_FILE);
+        for (String file : files) {
+            try (CsvReader in = CsvReader.open(file, false)) {
+                if (in == null) continue;
+                while (in.next()) {
+                    if (in.isBlank() || !in.isTerminated()) continue;
+                    try {
+                        if (!replay(in)) skipped++;
+                    } catch (NumberFormatException | IndexOutOfBoundsException ignored) {
+                        // torn or malformed record
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("❌ Error reading journal: " + e.getMessage());
+            }
+        }
+        if (skipped > 0) {
+            System.out.println("❌ Journal: " + skipped + " appointment(s) skipped after position " +
+                    appointments.size() + ", where a record is missing.");
+        }
+    }
+
+    // False if the record is an appointment that does not follow the last
+    // one stored
+    private boolean replay(CsvReader in) {
+        String op = in.getString(0);
+        if (op.length() != 1) return true;
+        switch (op.charAt(0)) {
+            case OP_DOCTOR: {
+                int id = in.getInt(1);
+                if (findDoctor(id) == null) {
+                    insertDoctor(new Doctor(symbols, id, in.getString(2), in.getInt(3), in.getString(4), in.getDouble(5)));
+                }
+                break;
+            }
+            case OP_PATIENT: {
+                int id = in.getInt(1);
+                if (findPatient(id) == null) {
+                    insertPatient(id, in.getString(2), in.getInt(3), in.getString(4), false, "");
+                }
+                break;
+            }
+            case OP_STAFF: {
+                int id = in.getInt(1);
+                if (staffById.get(id) == null) {
+                    insertStaff(new Staff(symbols, id, in.getString(2), in.getInt(3), in.getString(4), in.getString(5), in.getDouble(6)));
+                }
+                break;
+            }
+            case OP_APPOINTMENT: {
+                int index = in.getInt(1);
+                if (index < appointments.size()) break;
+                if (index > appointments.size()) return false;
+                Doctor d = findDoctor(in.getInt(2));
+                Patient p = findPatient(in.getInt(3));
+                if (d != null && p != null) {
+                    // The time field was added later; older records have none
+                    int slot = in.fieldCount() > 5 ? SlotBook.parseTime(in.getString(5)) : SlotBook.NONE;
+                    insertAppointment(d, p, in.getString(4), slot, false);
+                }
+                break;
+            }
+            case OP_TEST: {
+                Patient p = findPatient(in.getInt(1));
+                if (p != null) p.setTestRequired(in.getBoolean(2));
+                break;
+            }
+            case OP_PRESCRIPTION: {
+                Patient p = findPatient(in.getInt(1));
+                if (p != null) p.setPrescription(in.getString(2));
+                break;
+            }
+            case OP_FEE: {
+                int index = in.getInt(1);
+                if (index >= 0 && index < appointments.size()) appointments.get(index).setPaid(true);
+                break;
+            }
+            default:
+                break;
+        }
+        return true;
+    }
+
+    // ---------------- Load data from CSV ----------------
+    public static Hospital loadData() {
+        return loadData(LOAD_THREADS);
+    }
+
+    // threads > 1 reads the files in parallel (see CsvLoader)
+    public static Hospital loadData(int threads) {
+        long start = Metrics.start();
+        boolean ok = true;
+        Hospital h = new Hospital();
+        Path binary = Paths.get(BINARY_FILE);
+        boolean loaded = false;
+        if (BINARY_SNAPSHOT && Files.isRegularFile(binary)) {
+            try {
+                BinarySnapshot.read(binary, h);
+                loaded = true;
+            } catch (IOException e) {
+                System.out.println("❌ Error loading " + BINARY_FILE + ", falling back to CSV: " + e.getMessage());
+                h = new Hospital();
+                ok = false;
+            }
+        }
+        if (!loaded) new CsvLoader(threads, MAPPED_IO).loadInto(h);
+
+        // If no staff were loaded, add sample staff (keeps behaviour similar to original)
+        if (h.staffMembers.isEmpty()) {
+            h.insertStaff(new Staff(h.symbols, h.staffCounter.getAndIncrement(), "John Smith", 35, "Reception", "Receptionist", 35000));
+            h.insertStaff(new Staff(h.symbols, h.staffCounter.getAndIncrement(), "Sarah Wilson", 42, "Nursing", "Head Nurse", 55000));
+            h.insertStaff(new Staff(h.symbols, h.staffCounter.getAndIncrement(), "Mike Johnson", 28, "Maintenance", "Technician", 40000));
+        }
+
+        // Changes made since the last snapshot
+        h.replayJournal();
+        if (h.doubleBooked > 0) {
+            Appointment first = h.appointmentStore.view(h.firstDoubleBooked);
+            System.out.println("❌ " + h.doubleBooked + " appointment(s) share a doctor's slot with an earlier one, the first " +
+                    "with Dr. " + first.getDoctor().getName() + " on " + first.getDateAndTime() + ".");
+        }
+        h.ledger = FeeLedger.of(h.symbols, h.appointments);
+        h.snapshotBytes = snapshotSize();
+        try {
+            h.journal = new Journal(Paths.get(JOURNAL_FILE));
+        } catch (IOException e) {
+            System.out.println("❌ Error opening journal, changes cannot be saved: " + e.getMessage());
+            ok = false;
+        }
+
+        // Reset counters based on loaded data to avoid ID duplication
+        if (!h.doctors.isEmpty()) h.doctorCounter.set(h.doctors.stream().mapToInt(Doctor::getId).max().getAsInt() + 1);
+        if (h.patientStore.size() > 0) h.patientCounter.set(h.patientStore.maxId() + 1);
+        if (!h.staffMembers.isEmpty()) h.staffCounter.set(h.staffMembers.stream().mapToInt(Staff::getId).max().getAsInt() + 1);
+
+        // Name search structures for every loaded word, in one pass
+        h.patientNames.catchUp();
+        h.doctorNames.catchUp();
+
+        LOAD.end(start, ok);
+        return h;
+    }
+
+    // Getters
+    public List<Doctor> getDoctors() { return doctors; }
+    public List<Patient> getPatients() { return patients; }
+    public List<Staff> getStaffMembers() { return staffMembers; }
+    public List<Appointment> getAppointments() { return appointments; }
+    public FeeLedger getLedger() { return ledger; }
+    SymbolTable getSymbols() { return symbols; }
+}
@@ -0,0 +1,657 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===================
+// HospitalBenchmark - micro benchmarks for the Hospital core
+// ===================
+// Generates a synthetic data set for each size, then times each benchmark:
+// a warmup phase followed by a measured phase, both running until their
+// time budget is used up (at least once). For the measured phase it
+// reports throughput, the bytes allocated by the benchmark thread per
+// operation and the collections that ran meanwhile.
+//
+// The Hospital reads and writes its files in the working directory, so run
+// this from an empty scratch directory; it refuses to start next to
+// existing data and deletes what it generated when done.
+//
+//   java -Xmx8g -Dbench.sizes=1000,1000000 -Dbench.include=load,schedule HospitalBenchmark
+//
+// Properties:
+//   bench.sizes    patients (and appointments) per data set, default 1000,10000,100000,1000000,
+//                  which runs on the default heap; 10000000 is opt-in and wants -Xmx8g or more
+//   bench.include  benchmarks to run, default all (see BENCHMARKS)
+//   bench.warmup   warmup seconds per benchmark, default 1
+//   bench.time     measured seconds per benchmark, default 3
+//   bench.threads  thread counts for the concurrent benchmarks, default 1, 2, 4, ... up to the cores
+//
+// Output of the Hospital methods goes to a null stream while they run;
+// formatting it is still part of what is measured.
+//
+// "patientMemory" copies the loaded patients into a second PatientStore
+// and into the object-per-patient layout the store replaced (a Patient
+// object with its own strings, held in a list and an ID map) and prints
+// the heap each one retains per patient, with the prescriptions as
+// loaded and again with a unique one each. "appointmentMemory" does the
+// same for appointments, comparing an AppointmentStore, which keeps its
+// records off the heap, with an object per appointment.
+//
+// "logins" runs password logins on several threads and also prints the
+// latency percentiles they saw, queueing for the hashing pool included;
+// "resume" is a login with a session token instead. "reads" runs ID and
+// postings lookups on several threads to show how read
+// throughput scales. "book" has several threads booking random timed slots,
+// many of them already taken, to show how slot claims scale. "stress" runs writers, readers and background
+// checkpoints against one Hospital at once, checks the indexes while it
+// runs, then reloads the data from disk and fails unless it matches.
+public class HospitalBenchmark {
+    private static final String[] BENCHMARKS = {
+        "load", "patientMemory", "appointmentMemory", "login", "logins", "resume", "doctorPatients", "staffByDepartment", "nameSearch", "patientFilter", "billingSummary", "csvRead", "csvWrite", "escape",
+        "reads", "book", "freeSlot", "schedule", "save", "compact", "stress"
+    };
+
+    private static final String[] DATA_FILES = DataGenerator.DATA_FILES;
+
+    private static final String[] SPECIALIZATIONS = DataGenerator.SPECIALIZATIONS;
+    private static final String[] DISEASES = DataGenerator.DISEASES;
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    private static final PrintStream OUT = System.out;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are stored here so the JIT cannot drop the work
+    static volatile Object sink;
+
+    // One timed call; an invocation may stand for several operations
+    private interface Invocation {
+        void run(long i) throws Exception;
+    }
+
+    private static class Benchmark {
+        final String name;
+        final long opsPerInvocation;
+        final Invocation invocation;
+
+        Benchmark(String name, long opsPerInvocation, Invocation invocation) {
+            this.name = name;
+            this.opsPerInvocation = opsPerInvocation;
+            this.invocation = invocation;
+        }
+    }
+
+    private static class Result {
+        long ops;
+        long nanos;
+        long allocated;
+        long gcCount;
+        long gcMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = parseSizes(System.getProperty("bench.sizes", "1000,10000,100000,1000000"));
+        Set<String> include = new LinkedHashSet<>(Arrays.asList(System.getProperty("bench.include", String.join(",", BENCHMARKS)).split(",")));
+        long warmupNanos = (long) (Double.parseDouble(System.getProperty("bench.warmup", "1")) * 1e9);
+        long measureNanos = (long) (Double.parseDouble(System.getProperty("bench.time", "3")) * 1e9);
+        int[] threads = parseSizes(System.getProperty("bench.threads", defaultThreads()));
+
+        for (String name : include) {
+            if (!Arrays.asList(BENCHMARKS).contains(name)) {
+                OUT.println("Unknown benchmark: " + name + " (known: " + String.join(", ", BENCHMARKS) + ")");
+                return;
+            }
+        }
+        for (String f : DATA_FILES) {
+            if (Files.exists(Paths.get(f))) {
+                OUT.println("❌ " + f + " exists here; run the benchmark from an empty directory.");
+                return;
+            }
+        }
+
+        OUT.printf("%-10s %-18s %14s %12s %12s %10s %6s %8s%n",
+                "size", "benchmark", "ops/s", "us/op", "B/op", "MB/s", "gc", "gc ms");
+        for (int size : sizes) {
+            try {
+                generate(size);
+                runSize(size, include, threads, warmupNanos, measureNanos);
+            } finally {
+                System.setOut(OUT);
+                cleanUp();
+            }
+        }
+    }
+
+    private static String defaultThreads() {
+        StringBuilder sb = new StringBuilder("1");
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int n = 2; n <= cores; n <<= 1) sb.append(',').append(n);
+        if (Integer.bitCount(cores) != 1) sb.append(',').append(cores);
+        return sb.toString();
+    }
+
+    private static int[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) sizes[i] = Integer.parseInt(parts[i].trim().replace("_", ""));
+        return sizes;
+    }
+
+    private static void runSize(int size, Set<String> include, int[] threads, long warmupNanos, long measureNanos) throws Exception {
+        if (include.contains("load")) {
+            report(size, new Benchmark("load", 1, i -> {
+                Hospital h = Hospital.loadData();
+                h.close();
+                sink = h;
+            }), warmupNanos, measureNanos);
+        }
+
+        System.setOut(NULL_OUT);
+        Hospital h = Hospital.loadData();
+        System.setOut(OUT);
+        try {
+            int doctors = h.getDoctors().size();
+            int patients = h.getPatients().size();
+            List<Department> departments = h.getDepartments();
+            List<Patient> patientList = h.getPatients();
+
+            if (include.contains("patientMemory")) patientMemory(size, patientList);
+            if (include.contains("appointmentMemory")) appointmentMemory(size, h);
+
+            List<Benchmark> benchmarks = new ArrayList<>();
+            benchmarks.add(new Benchmark("login", 1, i -> sink = h.login("staff", "staff123")));
+            String token = h.openSession(h.login("staff", "staff123"));
+            benchmarks.add(new Benchmark("resume", 1, i -> sink = h.resumeSession(token)));
+            benchmarks.add(new Benchmark("doctorPatients", 1, i -> h.showDoctorPatients(1 + (int) (i % doctors))));
+            benchmarks.add(new Benchmark("staffByDepartment", 1,
+                    i -> h.searchStaffByDepartment(departments.get((int) (i % departments.size())).getName())));
+            String[] queries = nameQueries(patientList, 1024);
+            benchmarks.add(new Benchmark("nameSearch", 1, i -> sink = h.searchPatients(queries[(int) (i & 1023)], Hospital.SEARCH_LIMIT)));
+            PatientFilter[] filters = patientFilters();
+            benchmarks.add(new Benchmark("patientFilter", 1, i -> sink = h.countPatients(filters[(int) (i % filters.length)])));
+            benchmarks.add(new Benchmark("billingSummary", 1, i -> h.showBillingSummary()));
+            long appointmentRows = h.getAppointments().size();
+            benchmarks.add(new Benchmark("csvRead", appointmentRows, i -> {
+                long sum = 0;
+                try (CsvReader in = new CsvReader(Paths.get("appointments.csv"), false)) {
+                    in.next();
+                    while (in.next()) {
+                        sum += in.getInt(0) + in.getInt(1) + (in.getBoolean(3) ? 1 : 0);
+                    }
+                }
+                sink = sum;
+            }));
+            benchmarks.add(new Benchmark("csvWrite", patients, i -> {
+                try (CsvWriter w = new CsvWriter(new NullChannel())) {
+                    for (Patient p : patientList) {
+                        w.field(p.getId()).field(p.getName()).field(p.getAge())
+                                .field(p.getDisease()).field(p.isTestRequired()).field(p.getPrescription()).endRecord();
+                    }
+                }
+            }));
+            StringBuilder record = new StringBuilder();
+            benchmarks.add(new Benchmark("escape", patients, i -> {
+                for (Patient p : patientList) {
+                    record.setLength(0);
+                    CsvWriter.escape(p.getDisease(), record);
+                }
+                sink = record;
+            }));
+            int firstDay = Dates.of(2026, 1, 1);
+            benchmarks.add(new Benchmark("freeSlot", 1, i ->
+                    sink = h.findFreeSlot(SPECIALIZATIONS[(int) (i % SPECIALIZATIONS.length)], firstDay + (int) (i % 365), 0)));
+            benchmarks.add(new Benchmark("schedule", 1, i ->
+                    h.scheduleAppointment(1 + (int) (i % doctors), 1 + (int) ((i * 7919) % patients), "15/06/2026")));
+            benchmarks.add(new Benchmark("save", 1, i -> {
+                h.setTestRequired(1 + (int) (i % patients), (i & 1) == 0);
+                h.saveData();
+            }));
+            benchmarks.add(new Benchmark("compact", 1, i -> h.compact()));
+
+            for (Benchmark b : benchmarks) {
+                if (b.name.equals("resume") && include.contains("logins")) logins(size, h, threads, warmupNanos, measureNanos);
+                if (b.name.equals("schedule") && include.contains("reads")) reads(size, h, threads, warmupNanos, measureNanos);
+                if (b.name.equals("schedule") && include.contains("book")) book(size, h, threads, warmupNanos, measureNanos);
+                if (include.contains(b.name)) report(size, b, warmupNanos, measureNanos);
+            }
+        } finally {
+            h.close();
+        }
+        if (include.contains("stress")) stress(size, threads[threads.length - 1], measureNanos);
+    }
+
+    // Per disease: over 60 and needing a test, 18 to 40 with it or the
+    // next one, and in their thirties without a test
+    private static PatientFilter[] patientFilters() {
+        PatientFilter[] filters = new PatientFilter[DISEASES.length * 3];
+        for (int d = 0; d < DISEASES.length; d++) {
+            PatientFilter disease = PatientFilter.disease(DISEASES[d]);
+            filters[3 * d] = PatientFilter.age(60, PatientFilter.MAX).and(disease).and(PatientFilter.testRequired(true));
+            filters[3 * d + 1] = PatientFilter.age(18, 40).and(disease.or(PatientFilter.disease(DISEASES[(d + 1) % DISEASES.length])));
+            filters[3 * d + 2] = PatientFilter.age(30, 39).and(disease).and(PatientFilter.testRequired(false));
+        }
+        return filters;
+    }
+
+    // Names of random patients as a receptionist might type them, in turn:
+    // whole, with the last word cut to three letters, and with two letters
+    // of the last word swapped
+    private static String[] nameQueries(List<Patient> patients, int n) {
+        Random rnd = new Random(7);
+        String[] queries = new String[n];
+        for (int i = 0; i < n; i++) {
+            String name = patients.get(rnd.nextInt(patients.size())).getName();
+            int space = name.lastIndexOf(' ');
+            String last = name.substring(space + 1);
+            if (i % 3 == 1 && last.length() > 3) {
+                name = name.substring(0, space + 1) + last.substring(0, 3);
+            } else if (i % 3 == 2 && last.length() > 3) {
+                char[] c = last.toCharArray();
+                char t = c[1];
+                c[1] = c[2];
+                c[2] = t;
+                name = name.substring(0, space + 1) + new String(c);
+            }
+            queries[i] = name;
+        }
+        return queries;
+    }
+
+    // ---------------- Memory ----------------
+    // A patient as it was stored before PatientStore
+    private static final class ObjectPatient {
+        final int id;
+        final String name;
+        final int age;
+        final String disease;
+        boolean testRequired;
+        String prescription;
+
+        ObjectPatient(int id, String name, int age, String disease, boolean testRequired, String prescription) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+            this.disease = disease;
+            this.testRequired = testRequired;
+            this.prescription = prescription;
+        }
+    }
+
+    // Heap retained per patient by a PatientStore and by the object layout,
+    // both filled from the loaded patients. Strings are copied for the
+    // object layout because the CSV loader made one per field. Measured
+    // twice: with the prescriptions as loaded, mostly empty, and with a
+    // different one for every patient, as after a round of updates.
+    private static void patientMemory(int size, List<Patient> patients) {
+        patientMemory(size, "patientMemory", patients, Patient::getPrescription);
+        patientMemory(size, "patientMemory rx", patients, p -> "dose " + (1 + p.getId() % 4) + " daily, review #" + p.getId());
+    }
+
+    private static void patientMemory(int size, String name, List<Patient> patients,
+            java.util.function.Function<Patient, String> prescriptions) {
+        int n = patients.size();
+        String[] texts = new String[n];
+        for (int i = 0; i < n; i++) texts[i] = prescriptions.apply(patients.get(i));
+        long columns = retained(() -> {
+            PatientStore store = new PatientStore(new SymbolTable(true), n);
+            for (int i = 0; i < n; i++) {
+                Patient p = patients.get(i);
+                store.add(p.getId(), p.getName(), p.getAge(), p.getDisease(), p.isTestRequired(), copy(texts[i]));
+            }
+            return store;
+        });
+        long objects = retained(() -> {
+            List<ObjectPatient> list = new ArrayList<>();
+            IntMap<ObjectPatient> byId = new IntMap<>();
+            for (int i = 0; i < n; i++) {
+                Patient p = patients.get(i);
+                ObjectPatient o = new ObjectPatient(p.getId(), new String(p.getName()), p.getAge(), new String(p.getDisease()),
+                        p.isTestRequired(), copy(texts[i]));
+                list.add(o);
+                byId.put(o.id, o);
+            }
+            return new Object[] { list, byId };
+        });
+        OUT.printf(Locale.ROOT, "%-10d %-18s columns %.1f B/patient, objects %.1f B/patient (%.1fx)%n", size, name,
+                (double) columns / n, (double) objects / n, (double) objects / Math.max(1, columns));
+    }
+
+    // A string of its own, so it is counted against the layout holding it
+    private static String copy(String s) {
+        return s.isEmpty() ? "" : new String(s);
+    }
+
+    // An appointment as it was stored before AppointmentStore
+    private static final class ObjectAppointment {
+        final Doctor doctor;
+        final Patient patient;
+        final String date;
+        final int day;
+        final int slot;
+        volatile boolean paid;
+
+        ObjectAppointment(Doctor doctor, Patient patient, String date, int day, int slot, boolean paid) {
+            this.doctor = doctor;
+            this.patient = patient;
+            this.date = date;
+            this.day = day;
+            this.slot = slot;
+            this.paid = paid;
+        }
+    }
+
+    // Heap and direct memory per appointment for an AppointmentStore, and
+    // heap for the object layout, both filled from the loaded appointments
+    private static void appointmentMemory(int size, Hospital h) {
+        List<Appointment> appointments = h.getAppointments();
+        int n = appointments.size();
+        long[] offHeap = new long[1];
+        long heap = retained(() -> {
+            AppointmentStore store = new AppointmentStore(h::findDoctor, h::findPatient);
+            for (Appointment a : appointments) {
+                store.add(a.getDoctor().getId(), a.getPatient().getId(), a.getDate(), a.getSlot(), a.isPaid());
+            }
+            offHeap[0] = store.offHeapBytes();
+            return store;
+        });
+        long objects = retained(() -> {
+            List<ObjectAppointment> list = new ArrayList<>();
+            for (Appointment a : appointments) {
+                list.add(new ObjectAppointment(a.getDoctor(), a.getPatient(), a.getDate(), a.getDay(), a.getSlot(), a.isPaid()));
+            }
+            return list;
+        });
+        OUT.printf(Locale.ROOT, "%-10d %-18s store %.1f B/appointment heap + %.1f off heap, objects %.1f B/appointment heap%n",
+                size, "appointmentMemory", (double) heap / n, (double) offHeap[0] / n, (double) objects / n);
+    }
+
+    // Heap retained by what build makes: the used heap while it is kept,
+    // less the used heap once it is dropped. Garbage that happens to be
+    // freed in between only makes a reading larger, so the least of three
+    // is taken.
+    private static long retained(java.util.function.Supplier<Object> build) {
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            sink = build.get();
+            long kept = usedHeap();
+            sink = null;
+            least = Math.min(least, kept - usedHeap());
+        }
+        return least;
+    }
+
+    // Used heap once collecting stops freeing anything. Objects kept only
+    // by references the collector hands to other threads (cleaners,
+    // finalizers) can take a few rounds to go.
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long now = rt.totalMemory() - rt.freeMemory();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    // ---------------- Concurrent benchmarks ----------------
+    // Body of one benchmark thread; returns the operations it completed
+    private interface Worker {
+        long run(int thread, long deadline) throws Exception;
+    }
+
+    // Runs n workers until the deadline; allocation is summed over them
+    private static Result runThreads(int n, long nanos, Worker worker) throws Exception {
+        AtomicLong ops = new AtomicLong(), allocated = new AtomicLong();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread[] workers = new Thread[n];
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+        long start = System.nanoTime(), deadline = start + nanos;
+        for (int t = 0; t < n; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                long before = THREADS.getCurrentThreadAllocatedBytes();
+                try {
+                    ops.addAndGet(worker.run(thread, deadline));
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+                allocated.addAndGet(THREADS.getCurrentThreadAllocatedBytes() - before);
+            }, "bench-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        Result r = new Result();
+        r.nanos = System.nanoTime() - start;
+        r.ops = ops.get();
+        r.allocated = allocated.get();
+        r.gcCount = gcCount + gcCount();
+        r.gcMillis = gcMillis + gcMillis();
+        if (!errors.isEmpty()) {
+            Exception e = new IllegalStateException(errors.size() + " benchmark thread(s) failed");
+            for (Throwable t : errors) e.addSuppressed(t);
+            throw e;
+        }
+        return r;
+    }
+
+    // Lock-free lookups: a patient by ID and the appointments of a doctor
+    private static void reads(int size, Hospital h, int[] threads, long warmupNanos, long measureNanos) throws Exception {
+        int doctors = h.getDoctors().size();
+        int patients = h.getPatients().size();
+        List<Appointment> appointments = h.getAppointments();
+        Worker worker = (thread, deadline) -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long ops = 0, sum = 0;
+            while (System.nanoTime() < deadline) {
+                for (int k = 0; k < 256; k++) {
+                    Patient p = h.findPatient(1 + rnd.nextInt(patients));
+                    IntList list = h.getDoctorAppointments(1 + rnd.nextInt(doctors));
+                    if (p != null) sum += p.getAge();
+                    if (!list.isEmpty()) sum += appointments.get(list.get(list.size() - 1)).getDate().length();
+                }
+                ops += 256;
+            }
+            sink = sum;
+            return ops;
+        };
+        for (int n : threads) {
+            runThreads(n, warmupNanos, worker);
+            printRow(size, "reads x" + n, runThreads(n, measureNanos, worker));
+        }
+    }
+
+    // Password logins from several threads at once
+    private static void logins(int size, Hospital h, int[] threads, long warmupNanos, long measureNanos) throws Exception {
+        for (int n : threads) {
+            List<long[]> latencies = Collections.synchronizedList(new ArrayList<>());
+            Worker worker = (thread, deadline) -> {
+                long[] mine = new long[64];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    if (h.login("staff", "staff123") == null) throw new IllegalStateException("login refused");
+                    if (count == mine.length) mine = Arrays.copyOf(mine, count * 2);
+                    mine[count++] = System.nanoTime() - start;
+                }
+                latencies.add(Arrays.copyOf(mine, count));
+                return count;
+            };
+            runThreads(n, warmupNanos, worker);
+            latencies.clear();
+            printRow(size, "logins x" + n, runThreads(n, measureNanos, worker));
+            printLatencies(size, "logins x" + n, latencies);
+        }
+    }
+
+    private static void printLatencies(int size, String name, List<long[]> perThread) {
+        long[] all = perThread.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) return;
+        OUT.printf(Locale.ROOT, "%-10d %-18s latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n", size, name,
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * p / 100))] / 1e6;
+    }
+
+    // Timed bookings for random doctors, days of 2027 and slots, so threads
+    // often race for the same slot; refused bookings count as operations
+    private static void book(int size, Hospital h, int[] threads, long warmupNanos, long measureNanos) throws Exception {
+        int doctors = h.getDoctors().size();
+        int patients = h.getPatients().size();
+        int first = h.getAppointments().size();
+        Worker worker = (thread, deadline) -> {
+            Random rnd = ThreadLocalRandom.current();
+            long ops = 0;
+            while (System.nanoTime() < deadline) {
+                String date = String.format(Locale.ROOT, "%02d/%02d/2027", 1 + rnd.nextInt(28), 1 + rnd.nextInt(12));
+                h.scheduleAppointment(1 + rnd.nextInt(doctors), 1 + rnd.nextInt(patients), date, randomTime(rnd));
+                ops++;
+            }
+            return ops;
+        };
+        System.setOut(NULL_OUT);
+        try {
+            for (int n : threads) {
+                runThreads(n, warmupNanos, worker);
+                Result r = runThreads(n, measureNanos, worker);
+                System.setOut(OUT);
+                printRow(size, "book x" + n, r);
+                System.setOut(NULL_OUT);
+            }
+        } finally {
+            System.setOut(OUT);
+        }
+        List<String> problems = new ArrayList<>();
+        HospitalStressTest.checkSlots(problems, h.getAppointments(), first);
+        if (!problems.isEmpty()) throw new IllegalStateException("book failed: " + String.join("; ", problems));
+    }
+
+    // Writers, readers and a checkpointer on one Hospital, checked as by
+    // HospitalStressTest afterwards
+    private static void stress(int size, int threads, long measureNanos) throws Exception {
+        int writers = Math.max(1, threads / 2), readers = Math.max(1, threads - writers);
+        System.setOut(NULL_OUT);
+        Hospital h = Hospital.loadData();
+        int loaded = h.getAppointments().size();
+        h.startCheckpointer(1, Long.MAX_VALUE);
+        AtomicLong violations = new AtomicLong();
+        Result r;
+        try {
+            r = runThreads(writers + readers, measureNanos, (thread, deadline) -> thread < writers
+                    ? HospitalStressTest.writer(h, deadline) : HospitalStressTest.reader(h, deadline, violations));
+        } finally {
+            h.close();
+            System.setOut(OUT);
+        }
+        printRow(size, "stress " + writers + "w/" + readers + "r", r);
+
+        List<String> problems = new ArrayList<>();
+        if (violations.get() > 0) problems.add(violations.get() + " bad postings seen by readers");
+        problems.addAll(HospitalStressTest.verify(h, loaded));
+        if (!problems.isEmpty()) throw new IllegalStateException("stress test failed: " + String.join("; ", problems));
+        OUT.printf("%-10d stress OK: %d doctors, %d patients, %d staff, %d appointments after reload%n", size,
+                h.getDoctors().size(), h.getPatients().size(), h.getStaffMembers().size(), h.getAppointments().size());
+    }
+
+    private static void report(int size, Benchmark b, long warmupNanos, long measureNanos) throws Exception {
+        System.setOut(NULL_OUT);
+        Result r;
+        try {
+            long next = measure(b, 0, warmupNanos).ops / b.opsPerInvocation;
+            r = measure(b, next, measureNanos);
+        } finally {
+            System.setOut(OUT);
+        }
+        printRow(size, b.name, r);
+    }
+
+    // us/op is wall time per operation, so for several threads it falls as throughput rises
+    private static void printRow(int size, String name, Result r) {
+        double seconds = r.nanos / 1e9;
+        long ops = Math.max(1, r.ops);
+        OUT.printf(Locale.ROOT, "%-10d %-18s %14.1f %12.3f %12.1f %10.1f %6d %8d%n",
+                size, name, r.ops / seconds, r.nanos / 1e3 / ops,
+                (double) r.allocated / ops, r.allocated / 1e6 / seconds, r.gcCount, r.gcMillis);
+    }
+
+    // Runs invocations from index first until budget has passed
+    private static Result measure(Benchmark b, long first, long budget) throws Exception {
+        Result r = new Result();
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+        long allocated = -THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long i = first;
+        do {
+            b.invocation.run(i++);
+            r.nanos = System.nanoTime() - start;
+        } while (r.nanos < budget);
+        r.allocated = allocated + THREADS.getCurrentThreadAllocatedBytes();
+        r.gcCount = gcCount + gcCount();
+        r.gcMillis = gcMillis + gcMillis();
+        r.ops = (i - first) * b.opsPerInvocation;
+        return r;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    // ---------------- Synthetic data ----------------
+    // size patients and appointments, one doctor per 100 patients and one
+    // staff member per 20, spread evenly and with a fixed seed so every run
+    // sees the same data
+    private static void generate(int size) throws IOException {
+        new DataGenerator(size).doctorSkew(0).write(Paths.get("."));
+    }
+
+    private static String randomTime(Random rnd) { return DataGenerator.randomTime(rnd); }
+
+    private static void cleanUp() throws IOException {
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("."))) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                for (String f : DATA_FILES) {
+                    if (name.equals(f) || name.startsWith(f + ".")) {
+                        Files.deleteIfExists(p);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Discards everything written to it
+    private static class NullChannel implements WritableByteChannel {
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        public boolean isOpen() { return true; }
+        public void close() {}
+    }
+}
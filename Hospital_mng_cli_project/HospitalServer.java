@@ -0,0 +1,157 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ===================
+// HospitalServer - terminal sessions over TCP
+// ===================
+// Serves one loaded Hospital to many operators at once. Every connection
+// gets the same login and role menus as the console, with System.out
+// routed back to that connection (see SessionOutput). Sessions run on
+// virtual threads when the JVM has them (JDK 21+) and on a cached thread
+// pool otherwise. Only the loopback interface is served.
+class HospitalServer implements Closeable {
+    private final Hospital hospital;
+    private final ServerSocket server;
+    private final ExecutorService sessions = sessionExecutor();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionIds = new AtomicInteger();
+
+    public HospitalServer(Hospital hospital, int port) throws IOException {
+        this.hospital = hospital;
+        this.server = new ServerSocket(port, 256, InetAddress.getLoopbackAddress());
+    }
+
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "session");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+
+    // Accepts connections until close()
+    public void serve() {
+        SessionOutput.install();
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (server.isClosed()) break;
+                System.out.println("❌ Error accepting connection: " + e.getMessage());
+                continue;
+            }
+            connections.add(socket);
+            try {
+                sessions.execute(() -> runSession(socket));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void runSession(Socket socket) {
+        int id = sessionIds.incrementAndGet();
+        System.out.println("Session " + id + " opened from " + socket.getRemoteSocketAddress());
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8)) {
+            Scanner sc = new Scanner(new FlushingInput(socket.getInputStream(), out), StandardCharsets.UTF_8);
+            SessionOutput.bind(out);
+            try {
+                HospitalSystem.runSession(hospital, sc);
+            } catch (NoSuchElementException | IllegalStateException e) {
+                // Client went away in the middle of the session
+            } finally {
+                SessionOutput.unbind();
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Session " + id + " failed: " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+            System.out.println("Session " + id + " closed");
+        }
+    }
+
+    // Prompts are printed without a newline, so pending output is sent
+    // whenever the session waits for input
+    private static class FlushingInput extends FilterInputStream {
+        private final PrintStream out;
+
+        FlushingInput(InputStream in, PrintStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            out.flush();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            out.flush();
+            return super.read(b, off, len);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+
+    // Stops accepting and disconnects every session, waiting a few seconds
+    // for them to end
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+        for (Socket socket : connections) closeQuietly(socket);
+        sessions.shutdown();
+        try {
+            sessions.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // True once close() has run and every session has ended
+    public boolean isTerminated() { return sessions.isTerminated(); }
+
+    // Terminal client: sends stdin to the server and prints what comes
+    // back, so a session can be scripted with input redirection
+    public static void connect(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Thread input = new Thread(() -> {
+                try {
+                    System.in.transferTo(socket.getOutputStream());
+                    socket.shutdownOutput();
+                } catch (IOException ignored) {
+                    // server closed the session
+                }
+            }, "client-input");
+            input.setDaemon(true);
+            input.start();
+            socket.getInputStream().transferTo(System.out);
+            System.out.flush();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===================
+// HospitalStressTest - concurrent sessions on one Hospital, then checks
+// ===================
+// Generates data, loads it, and runs writers, readers and background
+// checkpoints against one Hospital at once. Readers check the postings
+// they see while it runs. Afterwards:
+//   - doctor, patient and staff IDs must be unique and below their counters
+//   - every record must be found by its ID, every appointment posted once
+//     under its doctor, its patient and its date, and the filter indexes
+//     must count what a scan of the patients counts
+//   - no doctor slot may be booked twice and the fee ledger must match a
+//     recount of the appointments
+//   - a reload from disk must give back the same records and ledger, with
+//     indexes that pass the same checks
+// Each problem is printed and the exit status is 1; 0 means every check
+// passed.
+//
+//   java -Dstress.patients=100000 -Dstress.seconds=10 HospitalStressTest
+//
+// Properties:
+//   stress.patients  generated patients, default 100000
+//   stress.seconds   how long writers and readers run, default 10
+//   stress.threads   writer and reader threads, default the cores (at least 2)
+//
+// Run it from an empty directory. The data files are deleted when it
+// passes and left there to look at when it fails.
+public class HospitalStressTest {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) throws Exception {
+        int patients = Integer.getInteger("stress.patients", 100000);
+        long nanos = (long) (Double.parseDouble(System.getProperty("stress.seconds", "10")) * 1e9);
+        int threads = Math.max(2, Integer.getInteger("stress.threads", Runtime.getRuntime().availableProcessors()));
+        int writers = threads / 2, readers = threads - writers;
+
+        for (String f : DataGenerator.DATA_FILES) {
+            if (Files.exists(Paths.get(f))) {
+                System.out.println("❌ " + f + " exists here; run the stress test from an empty directory.");
+                System.exit(1);
+            }
+        }
+
+        PrintStream out = System.out;
+        List<String> problems = new ArrayList<>();
+        Hospital h;
+        int loaded;
+        long ops;
+        System.setOut(NULL_OUT);
+        try {
+            new DataGenerator(patients).doctorSkew(0).write(Paths.get("."));
+            h = Hospital.loadData();
+            loaded = h.getAppointments().size();
+            h.startCheckpointer(1, Long.MAX_VALUE);
+            AtomicLong violations = new AtomicLong();
+            try {
+                ops = run(h, writers, readers, nanos, violations, problems);
+            } finally {
+                h.close();
+            }
+            if (violations.get() > 0) problems.add(violations.get() + " bad postings seen by readers");
+        } finally {
+            System.setOut(out);
+        }
+        problems.addAll(verify(h, loaded));
+
+        System.out.printf(Locale.ROOT, "%d writers, %d readers: %d operations in %.1f s%n",
+                writers, readers, ops, nanos / 1e9);
+        if (!problems.isEmpty()) {
+            for (String p : problems) System.out.println("❌ " + p);
+            System.out.println("❌ Stress test failed with " + problems.size() + " problem(s); data left in place.");
+            System.exit(1);
+        }
+        deleteData();
+        System.out.printf("✅ Stress test passed: %d doctors, %d patients, %d staff, %d appointments after reload%n",
+                h.getDoctors().size(), h.getPatients().size(), h.getStaffMembers().size(), h.getAppointments().size());
+    }
+
+    // Runs the writers and readers until nanos have passed; returns the
+    // operations they completed. A thread that throws is a problem.
+    private static long run(Hospital h, int writers, int readers, long nanos, AtomicLong violations,
+                            List<String> problems) throws InterruptedException {
+        AtomicLong ops = new AtomicLong();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + nanos;
+        Thread[] workers = new Thread[writers + readers];
+        for (int t = 0; t < workers.length; t++) {
+            boolean writer = t < writers;
+            workers[t] = new Thread(() -> {
+                try {
+                    ops.addAndGet(writer ? writer(h, deadline) : reader(h, deadline, violations));
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }, "stress-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        for (Throwable e : errors) problems.add("a stress thread failed: " + e);
+        return ops.get();
+    }
+
+    // Random adds, bookings, updates and payments until the deadline
+    static long writer(Hospital h, long deadline) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String[] diseases = DataGenerator.DISEASES;
+        long ops = 0;
+        while (System.nanoTime() < deadline) {
+            int doctor = 1 + rnd.nextInt(h.doctorCounter.get() - 1);
+            int patient = 1 + rnd.nextInt(h.patientCounter.get() - 1);
+            int op = rnd.nextInt(100);
+            if (op < 30) {
+                h.addPatient("Stress " + rnd.nextInt(1000000), 1 + rnd.nextInt(95), diseases[rnd.nextInt(diseases.length)]);
+            } else if (op < 50) {
+                h.scheduleAppointment(doctor, patient, String.format(Locale.ROOT, "%02d/%02d/2026", 1 + rnd.nextInt(28), 1 + rnd.nextInt(12)));
+            } else if (op < 65) {
+                h.scheduleAppointment(doctor, patient, String.format(Locale.ROOT, "%02d/%02d/2026", 1 + rnd.nextInt(28), 1 + rnd.nextInt(12)),
+                        rnd.nextInt(4) == 0 ? "" : DataGenerator.randomTime(rnd));
+            } else if (op < 75) {
+                h.setTestRequired(patient, rnd.nextBoolean());
+            } else if (op < 85) {
+                h.setPrescription(patient, "dose " + rnd.nextInt(10) + ", \"daily\"");
+            } else if (op < 95) {
+                h.takeAppointmentFee(rnd.nextInt(h.getAppointments().size()));
+            } else if (op < 98) {
+                String[] specializations = DataGenerator.SPECIALIZATIONS;
+                h.addDoctor("Stress Doctor", 30 + rnd.nextInt(35), specializations[rnd.nextInt(specializations.length)], 100);
+            } else {
+                String[] departments = DataGenerator.DEPARTMENTS;
+                h.addStaff("Stress Staff", 20 + rnd.nextInt(45), departments[rnd.nextInt(departments.length)],
+                        DataGenerator.POSITIONS[0], 30000);
+            }
+            ops++;
+        }
+        return ops;
+    }
+
+    // Lookups until the deadline; counts postings that point at an
+    // appointment of another doctor or patient, and IDs found as another
+    static long reader(Hospital h, long deadline, AtomicLong violations) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<Appointment> appointments = h.getAppointments();
+        long ops = 0;
+        while (System.nanoTime() < deadline) {
+            int doctor = 1 + rnd.nextInt(h.doctorCounter.get() - 1);
+            IntList list = h.getDoctorAppointments(doctor);
+            for (int i = 0; i < list.size(); i++) {
+                if (appointments.get(list.get(i)).getDoctor().getId() != doctor) violations.incrementAndGet();
+            }
+            int patient = 1 + rnd.nextInt(h.patientCounter.get() - 1);
+            list = h.getPatientAppointments(patient);
+            for (int i = 0; i < list.size(); i++) {
+                if (appointments.get(list.get(i)).getPatient().getId() != patient) violations.incrementAndGet();
+            }
+            Patient p = h.findPatient(patient);
+            if (p != null && p.getId() != patient) violations.incrementAndGet();
+            ops++;
+        }
+        return ops;
+    }
+
+    // Checks a Hospital after a stress run, with no writers left, and
+    // reloads its data to check that too. loaded is the number of
+    // appointments it started with. Returns the problems found.
+    static List<String> verify(Hospital h, int loaded) {
+        List<String> problems = new ArrayList<>();
+        checkIds(problems, "doctor", h.getDoctors(), h.doctorCounter.get());
+        checkIds(problems, "patient", h.getPatients(), h.patientCounter.get());
+        checkIds(problems, "staff", h.getStaffMembers(), h.staffCounter.get());
+        checkIndexes(problems, "", h);
+        checkSlots(problems, h.getAppointments(), loaded);
+        checkLedger(problems, "", h.getLedger(), FeeLedger.of(h.getSymbols(), h.getAppointments()), h.getDoctors());
+
+        PrintStream out = System.out;
+        Hospital reloaded;
+        System.setOut(NULL_OUT);
+        try {
+            reloaded = Hospital.loadData();
+            reloaded.close();
+        } finally {
+            System.setOut(out);
+        }
+        if (fingerprint(reloaded) != fingerprint(h)) problems.add("reloaded data differs from memory");
+        checkIndexes(problems, "after reload: ", reloaded);
+        checkLedger(problems, "after reload: ", h.getLedger(), reloaded.getLedger(), h.getDoctors());
+        return problems;
+    }
+
+    private static void checkIds(List<String> problems, String kind, List<? extends Person> records, int counter) {
+        Set<Integer> seen = new HashSet<>();
+        for (Person p : records) {
+            if (!seen.add(p.getId())) problems.add("duplicate " + kind + " ID " + p.getId());
+            if (p.getId() >= counter) problems.add(kind + " ID " + p.getId() + " not below counter " + counter);
+        }
+    }
+
+    // The ID lookups, the appointment postings by doctor, patient and date,
+    // and the patient filter indexes, against the records themselves
+    private static void checkIndexes(List<String> problems, String when, Hospital h) {
+        int missing = 0;
+        for (Doctor d : h.getDoctors()) {
+            Doctor found = h.findDoctor(d.getId());
+            if (found == null || found.getId() != d.getId()) missing++;
+        }
+        for (Patient p : h.getPatients()) {
+            Patient found = h.findPatient(p.getId());
+            if (found == null || found.getId() != p.getId()) missing++;
+        }
+        if (missing > 0) problems.add(when + missing + " records not found by their ID");
+
+        List<Appointment> appointments = h.getAppointments();
+        int n = appointments.size();
+        int[] byDoctor = new int[n], byPatient = new int[n], byDate = new int[n];
+        int wrong = 0;
+        for (Doctor d : h.getDoctors()) {
+            IntList list = h.getDoctorAppointments(d.getId());
+            for (int i = 0; i < list.size(); i++) {
+                int a = list.get(i);
+                if (a < n && appointments.get(a).getDoctor().getId() == d.getId()) byDoctor[a]++;
+                else wrong++;
+            }
+        }
+        Set<Integer> patientIds = new HashSet<>();
+        for (Appointment a : appointments) patientIds.add(a.getPatient().getId());
+        for (int id : patientIds) {
+            IntList list = h.getPatientAppointments(id);
+            for (int i = 0; i < list.size(); i++) {
+                int a = list.get(i);
+                if (a < n && appointments.get(a).getPatient().getId() == id) byPatient[a]++;
+                else wrong++;
+            }
+        }
+        Set<String> dates = new HashSet<>();
+        for (Appointment a : appointments) dates.add(a.getDate());
+        Set<IntList> seenDays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String date : dates) {
+            // Dates spelt differently may share a day's list
+            IntList list = h.getAppointmentsOnDate(date);
+            if (!seenDays.add(list)) continue;
+            int day = Dates.parse(date);
+            for (int i = 0; i < list.size(); i++) {
+                int a = list.get(i);
+                boolean same = a < n && (day != Dates.UNKNOWN ? appointments.get(a).getDay() == day
+                        : appointments.get(a).getDate().trim().equals(date.trim()));
+                if (same) byDate[a]++;
+                else wrong++;
+            }
+        }
+        if (wrong > 0) problems.add(when + wrong + " postings point at the wrong appointment");
+        int unposted = 0;
+        for (int a = 0; a < n; a++) {
+            if (byDoctor[a] != 1 || byPatient[a] != 1 || byDate[a] != 1) unposted++;
+        }
+        if (unposted > 0) problems.add(when + unposted + " appointments not posted exactly once per index");
+
+        for (String disease : DataGenerator.DISEASES) {
+            String key = disease.trim().toLowerCase(Locale.ROOT);
+            for (int from = 0; from < 100; from += 20) {
+                int lo = from, hi = from + 19;
+                PatientFilter filter = PatientFilter.disease(disease).and(PatientFilter.age(lo, hi))
+                        .and(PatientFilter.testRequired(true));
+                long expected = h.getPatients().stream()
+                        .filter(p -> p.getDisease().trim().toLowerCase(Locale.ROOT).equals(key)
+                                && p.getAge() >= lo && p.getAge() <= hi && p.isTestRequired())
+                        .count();
+                int counted = h.countPatients(filter);
+                if (counted != expected) {
+                    problems.add(when + "filter \"" + filter + "\" counts " + counted + ", a scan " + expected);
+                }
+            }
+        }
+    }
+
+    // Appointments from position first on must not take a slot already
+    // taken. Earlier ones may repeat a slot: the generated files were
+    // never checked for that.
+    static void checkSlots(List<String> problems, List<Appointment> appointments, int first) {
+        Set<Long> taken = new HashSet<>();
+        for (int i = 0; i < appointments.size(); i++) {
+            Appointment a = appointments.get(i);
+            if (a.getSlot() == SlotBook.NONE) continue;
+            long key = ((long) a.getDoctor().getId() << 32) | ((long) a.getDay() * SlotBook.SLOTS + a.getSlot());
+            if (!taken.add(key) && i >= first) {
+                problems.add("slot booked twice: doctor " + a.getDoctor().getId() + " on " + a.getDateAndTime());
+            }
+        }
+    }
+
+    private static void checkLedger(List<String> problems, String when, FeeLedger live, FeeLedger expected, List<Doctor> doctors) {
+        if (!sameTotals(live.getTotal(), expected.getTotal())) problems.add(when + "fee ledger totals differ from a recount");
+        for (Doctor d : doctors) {
+            if (!sameTotals(live.getDoctor(d.getId()), expected.getDoctor(d.getId()))) {
+                problems.add(when + "fee ledger differs from a recount for doctor " + d.getId());
+            }
+        }
+        for (String s : DataGenerator.SPECIALIZATIONS) {
+            if (!sameTotals(live.getSpecialization(s), expected.getSpecialization(s))) {
+                problems.add(when + "fee ledger differs from a recount for " + s);
+            }
+        }
+    }
+
+    private static boolean sameTotals(FeeLedger.Totals a, FeeLedger.Totals b) {
+        return a.paidCents == b.paidCents && a.paidCount == b.paidCount
+                && a.outstandingCents == b.outstandingCents && a.outstandingCount == b.outstandingCount;
+    }
+
+    private static long fingerprint(Hospital h) {
+        long x = 0;
+        for (Doctor d : h.getDoctors()) x = x * 31 + d.toString().hashCode();
+        for (Patient p : h.getPatients()) x = x * 31 + p.toString().hashCode();
+        for (Staff s : h.getStaffMembers()) x = x * 31 + s.toString().hashCode();
+        for (Appointment a : h.getAppointments()) x = x * 31 + a.toString().hashCode();
+        return x;
+    }
+
+    private static void deleteData() throws IOException {
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("."))) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                for (String f : DataGenerator.DATA_FILES) {
+                    if (name.equals(f) || name.startsWith(f + ".")) {
+                        Files.deleteIfExists(p);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,634 +1,129 @@
 import java.io.*;
+import java.time.LocalTime;
 import java.util.*;
 
 // ===================
-// Base Person class
-// ===================
-abstract class Person {
-    protected int id;
-    protected String name;
-    protected int age;
-
-    public Person(int id, String name, int age) {
-        this.id = id;
-        this.name = name;
-        this.age = age;
-    }
-
-    public int getId() { return id; }
-    public String getName() { return name; }
-    public int getAge() { return age; }
-}
-
-// ===================
-// Doctor class
-// ===================
-class Doctor extends Person {
-    private String specialization;
-    private double appointmentFee;
-
-    public Doctor(int id, String name, int age, String specialization, double appointmentFee) {
-        super(id, name, age);
-        this.specialization = specialization;
-        this.appointmentFee = appointmentFee;
-    }
-
-    public String getSpecialization() { return specialization; }
-    public double getAppointmentFee() { return appointmentFee; }
-
-    @Override
-    public String toString() {
-        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Specialization: %-15s | Fee: $%-6.2f",
-                id, name, age, specialization, appointmentFee);
-    }
-}
-
-// ===================
-// Patient class
-// ===================
-class Patient extends Person {
-    private String disease;
-    private boolean testRequired;
-    private String prescription;
-
-    public Patient(int id, String name, int age, String disease) {
-        super(id, name, age);
-        this.disease = disease;
-        this.testRequired = false;
-        this.prescription = "";
-    }
-
-    public String getDisease() { return disease; }
-    public boolean isTestRequired() { return testRequired; }
-    public void setTestRequired(boolean testRequired) { this.testRequired = testRequired; }
-    public String getPrescription() { return prescription; }
-    public void setPrescription(String prescription) { this.prescription = prescription; }
-
-    @Override
-    public String toString() {
-        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Disease: %-15s | Test: %-5s | Prescription: %-20s",
-                id, name, age, disease, testRequired ? "Yes" : "No", prescription);
-    }
-}
-
-// ===================
-// Staff class
-// ===================
-class Staff extends Person {
-    private String department;
-    private String position;
-    private double salary;
-
-    public Staff(int id, String name, int age, String department, String position, double salary) {
-        super(id, name, age);
-        this.department = department;
-        this.position = position;
-        this.salary = salary;
-    }
-
-    public String getDepartment() { return department; }
-    public String getPosition() { return position; }
-    public double getSalary() { return salary; }
-
-    @Override
-    public String toString() {
-        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Department: %-15s | Position: %-15s | Salary: $%-8.2f",
-                id, name, age, department, position, salary);
-    }
-}
-
-// ===================
-// Appointment class
-// ===================
-class Appointment {
-    private Doctor doctor;
-    private Patient patient;
-    private String date;
-    private boolean isPaid;
-
-    public Appointment(Doctor doctor, Patient patient, String date) {
-        this.doctor = doctor;
-        this.patient = patient;
-        this.date = date;
-        this.isPaid = false;
-    }
-
-    public Doctor getDoctor() { return doctor; }
-    public Patient getPatient() { return patient; }
-    public String getDate() { return date; }
-    public boolean isPaid() { return isPaid; }
-    public void setPaid(boolean paid) { isPaid = paid; }
-    public double getFee() { return doctor.getAppointmentFee(); }
-
-    @Override
-    public String toString() {
-        return String.format("Date: %-10s | Dr. %-15s | Patient: %-15s | Fee: $%-6.2f | Paid: %-3s",
-                date, doctor.getName(), patient.getName(),
-                doctor.getAppointmentFee(), isPaid ? "Yes" : "No");
-    }
-}
-
-// ===================
-// User class (Login)
+// Main Program
 // ===================
-class User {
-    private String username;
-    private String password;
-    private String role;
-
-    public User(String username, String password, String role) {
-        this.username = username;
-        this.password = password;
-        this.role = role;
-    }
-
-    public String getUsername() { return username; }
-    public String getPassword() { return password; }
-    public String getRole() { return role; }
-}
-
-
-// Hospital System 
-
-class Hospital {
-    private List<Doctor> doctors = new ArrayList<>();
-    private List<Patient> patients = new ArrayList<>();
-    private List<Staff> staffMembers = new ArrayList<>();
-    private List<Appointment> appointments = new ArrayList<>();
-    private List<User> users = new ArrayList<>();
-
-    int doctorCounter = 1, patientCounter = 1, staffCounter = 1;
-
-    public Hospital() {
-        // Default accounts
-        users.add(new User("admin", "admin123", "ADMIN"));
-        users.add(new User("user", "user123", "USER"));
-        users.add(new User("doctor", "doctor123", "DOCTOR"));
-        users.add(new User("staff", "staff123", "STAFF"));
-    }
-
-    // Login
-    public User login(String username, String password) {
-        for (User u : users) {
-            if (u.getUsername().equals(username) && u.getPassword().equals(password)) {
-                return u;
-            }
-        }
-        return null;
-    }
-
-    // Add methods
-    public void addDoctor(String name, int age, String specialization, double appointmentFee) {
-        doctors.add(new Doctor(doctorCounter++, name, age, specialization, appointmentFee));
-        System.out.println("Doctor added successfully!");
-    }
-
-    public void addPatient(String name, int age, String disease) {
-        patients.add(new Patient(patientCounter++, name, age, disease));
-        System.out.println("Patient added successfully!");
-    }
-
-    public void addStaff(String name, int age, String department, String position, double salary) {
-        staffMembers.add(new Staff(staffCounter++, name, age, department, position, salary));
-        System.out.println("Staff member added successfully!");
-    }
-
-    public void scheduleAppointment(int doctorId, int patientId, String date) {
-        Doctor doctor = null;
-        Patient patient = null;
-        for (Doctor d : doctors) if (d.getId() == doctorId) { doctor = d; break; }
-        for (Patient p : patients) if (p.getId() == patientId) { patient = p; break; }
-
-        if (doctor != null && patient != null) {
-            appointments.add(new Appointment(doctor, patient, date));
-            System.out.println("✅ Appointment scheduled successfully!");
-            System.out.println("   Details: Dr. " + doctor.getName() + " with " + patient.getName() +
-                    " on " + date + " | Fee: $" + doctor.getAppointmentFee());
-        } else {
-            System.out.println("❌ Invalid Doctor ID or Patient ID!");
-        }
-    }
-
-    // Show methods
-    public void showDoctors() {
-        System.out.println("\n=== LIST OF DOCTORS ===");
-        if (doctors.isEmpty()) {
-            System.out.println("No doctors available.");
-        } else {
-            System.out.println("ID   Name            Age  Specialization      Fee");
-            System.out.println("-------------------------------------------------");
-            for (Doctor doctor : doctors) {
-                System.out.println(doctor);
-            }
-        }
-        System.out.println("=======================");
-    }
-
-    public void showPatients() {
-        System.out.println("\n=== LIST OF PATIENTS ===");
-        if (patients.isEmpty()) {
-            System.out.println("No patients available.");
-        } else {
-            System.out.println("ID   Name            Age  Disease           Test  Prescription");
-            System.out.println("-------------------------------------------------------------");
-            for (Patient patient : patients) {
-                System.out.println(patient);
-            }
-        }
-        System.out.println("=======================");
-    }
-
-    public void showStaff() {
-        System.out.println("\n=== LIST OF STAFF MEMBERS ===");
-        if (staffMembers.isEmpty()) {
-            System.out.println("No staff members available.");
-        } else {
-            System.out.println("ID   Name            Age  Department        Position         Salary");
-            System.out.println("------------------------------------------------------------------");
-            for (Staff staff : staffMembers) {
-                System.out.println(staff);
-            }
-        }
-        System.out.println("===========================");
-    }
+// java HospitalSystem               one session on this terminal
+// java HospitalSystem --server [p]  serve sessions on localhost port p
+// java HospitalSystem --connect [p] connect this terminal to a server
+public class HospitalSystem {
+    // Server port when none is given (-Dhospital.server.port)
+    private static final int DEFAULT_PORT = Integer.getInteger("hospital.server.port", 7070);
 
-    public void showAppointments() {
-        System.out.println("\n=== SCHEDULED APPOINTMENTS ===");
-        if (appointments.isEmpty()) {
-            System.out.println("No appointments scheduled.");
-        } else {
-            System.out.println("Date       Doctor          Patient         Fee      Paid");
-            System.out.println("--------------------------------------------------------");
-            for (Appointment appointment : appointments) {
-                System.out.println(appointment);
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "";
+        int port = DEFAULT_PORT;
+        if (args.length > 1) {
+            port = parsePort(args[1]);
+            if (port < 0) {
+                System.out.println("❌ Invalid port: " + args[1] + "! Use a number from 0 to 65535.");
+                return;
             }
         }
-        System.out.println("==============================");
-    }
-
-    public void showAppointmentFees() {
-        System.out.println("\n=== APPOINTMENT FEES ===");
-        if (doctors.isEmpty()) {
-            System.out.println("No doctors available.");
-        } else {
-            System.out.println("Doctor            Specialization      Fee");
-            System.out.println("-----------------------------------------");
-            for (Doctor doctor : doctors) {
-                System.out.printf("%-15s   %-15s   $%-6.2f%n",
-                        doctor.getName(), doctor.getSpecialization(), doctor.getAppointmentFee());
+        if (mode.equals("--connect")) {
+            try {
+                HospitalServer.connect(port);
+            } catch (IOException e) {
+                System.out.println("❌ Cannot connect to port " + port + ": " + e.getMessage());
             }
-        }
-        System.out.println("=======================");
-    }
-
-    // Doctor functions
-    public void showDoctorPatients(int doctorId) {
-        Doctor doctor = null;
-        for (Doctor d : doctors) if (d.getId() == doctorId) { doctor = d; break; }
-        if (doctor == null) {
-            System.out.println("❌ Doctor not found!");
             return;
         }
 
-        System.out.println("\n=== PATIENTS FOR DR. " + doctor.getName() + " ===");
-        boolean hasPatients = false;
-
-        for (Appointment appointment : appointments) {
-            if (appointment.getDoctor().getId() == doctorId) {
-                Patient patient = appointment.getPatient();
-                System.out.println(patient);
-                hasPatients = true;
-            }
-        }
-
-        if (!hasPatients) {
-            System.out.println("No patients scheduled for this doctor.");
-        }
-        System.out.println("==================================");
-    }
-
-    public void setTestRequired(int patientId, boolean testRequired) {
-        Patient patient = null;
-        for (Patient p : patients) if (p.getId() == patientId) { patient = p; break; }
-        if (patient != null) {
-            patient.setTestRequired(testRequired);
-            System.out.println("Test requirement updated for patient: " + patient.getName());
-        } else {
-            System.out.println("❌ Patient not found!");
-        }
-    }
-
-    public void setPrescription(int patientId, String prescription) {
-        Patient patient = null;
-        for (Patient p : patients) if (p.getId() == patientId) { patient = p; break; }
-        if (patient != null) {
-            patient.setPrescription(prescription);
-            System.out.println("Prescription updated for patient: " + patient.getName());
-        } else {
-            System.out.println("❌ Patient not found!");
-        }
-    }
-
-    public void takeAppointmentFee(int appointmentIndex) {
-        if (appointmentIndex >= 0 && appointmentIndex < appointments.size()) {
-            Appointment appointment = appointments.get(appointmentIndex);
-            appointment.setPaid(true);
-            System.out.println("Fee collected for appointment with " + appointment.getPatient().getName() +
-                    " on " + appointment.getDate() + " | Amount: $" + appointment.getFee());
-        } else {
-            System.out.println("❌ Invalid appointment index!");
-        }
-    }
+        Hospital hospital = Hospital.loadData();
 
-    // Staff functions
-    public void showAllStaff() {
-        showStaff();
-    }
+        // Background checkpoints (-Dhospital.checkpoint.interval=seconds, 0 = off)
+        hospital.startCheckpointer(Long.getLong("hospital.checkpoint.interval", 60),
+                Long.getLong("hospital.checkpoint.maxMillis", 10_000));
 
-    public void searchStaffByDepartment(String department) {
-        System.out.println("\n=== STAFF IN DEPARTMENT: " + department.toUpperCase() + " ===");
-        boolean found = false;
-        for (Staff staff : staffMembers) {
-            if (staff.getDepartment().equalsIgnoreCase(department)) {
-                System.out.println(staff);
-                found = true;
-            }
-        }
-        if (!found) {
-            System.out.println("No staff members found in " + department + " department.");
+        if (mode.equals("--server")) {
+            serve(hospital, port);
+            return;
         }
-        System.out.println("==================================");
-    }
 
-    // ---------------- CSV helpers ----------------
-    private static String escapeCsv(String field) {
-        if (field == null) return "";
-        boolean needQuotes = field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r");
-        String f = field.replace("\"", "\"\"");
-        if (needQuotes) {
-            return "\"" + f + "\"";
-        } else {
-            return f;
-        }
+        Scanner sc = new Scanner(System.in);
+        runSession(hospital, sc);
+        hospital.close();
+        sc.close();
     }
 
-    private static List<String> parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
-        if (line == null) return result;
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    // Escaped quote
-                    cur.append('"');
-                    i++; // skip next
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                result.add(cur.toString());
-                cur.setLength(0);
-            } else {
-                cur.append(c);
-            }
+    // Port number, or -1 if text is not one
+    private static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text.trim());
+            return port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        result.add(cur.toString());
-        return result;
     }
 
-    // ---------------- Save data as CSV ----------------
-    public void saveData() {
+    private static void serve(Hospital hospital, int port) {
+        HospitalServer server;
         try {
-            // Doctors
-            try (PrintWriter pw = new PrintWriter(new FileWriter("doctors.csv"))) {
-                pw.println("ID,Name,Age,Specialization,Fee");
-                for (Doctor d : doctors) {
-                    pw.printf("%d,%s,%d,%s,%.2f%n",
-                            d.getId(),
-                            escapeCsv(d.getName()),
-                            d.getAge(),
-                            escapeCsv(d.getSpecialization()),
-                            d.getAppointmentFee());
-                }
-            }
-
-            // Patients
-            try (PrintWriter pw = new PrintWriter(new FileWriter("patients.csv"))) {
-                pw.println("ID,Name,Age,Disease,TestRequired,Prescription");
-                for (Patient p : patients) {
-                    pw.printf("%d,%s,%d,%s,%s,%s%n",
-                            p.getId(),
-                            escapeCsv(p.getName()),
-                            p.getAge(),
-                            escapeCsv(p.getDisease()),
-                            p.isTestRequired(),
-                            escapeCsv(p.getPrescription()));
-                }
-            }
-
-            // Staff
-            try (PrintWriter pw = new PrintWriter(new FileWriter("staff.csv"))) {
-                pw.println("ID,Name,Age,Department,Position,Salary");
-                for (Staff s : staffMembers) {
-                    pw.printf("%d,%s,%d,%s,%s,%.2f%n",
-                            s.getId(),
-                            escapeCsv(s.getName()),
-                            s.getAge(),
-                            escapeCsv(s.getDepartment()),
-                            escapeCsv(s.getPosition()),
-                            s.getSalary());
-                }
-            }
-
-            // Appointments
-            try (PrintWriter pw = new PrintWriter(new FileWriter("appointments.csv"))) {
-                pw.println("DoctorID,PatientID,Date,Paid");
-                for (Appointment a : appointments) {
-                    pw.printf("%d,%d,%s,%s%n",
-                            a.getDoctor().getId(),
-                            a.getPatient().getId(),
-                            escapeCsv(a.getDate()),
-                            a.isPaid());
-                }
-            }
-
-            System.out.println("✅ Data saved to CSV!");
+            server = new HospitalServer(hospital, port);
         } catch (IOException e) {
-            System.out.println("❌ Error saving data: " + e.getMessage());
+            System.out.println("❌ Cannot listen on port " + port + ": " + e.getMessage());
+            hospital.close();
+            return;
         }
-    }
-
-    // ---------------- Load data from CSV ----------------
-    public static Hospital loadData() {
-        Hospital h = new Hospital();
-
-        // Doctors
-        try (Scanner sc = new Scanner(new File("doctors.csv"))) {
-            if (sc.hasNextLine()) sc.nextLine(); // skip header
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                if (line.trim().isEmpty()) continue;
-                List<String> parts = parseCsvLine(line);
-                if (parts.size() < 5) continue;
-                try {
-                    int id = Integer.parseInt(parts.get(0));
-                    String name = parts.get(1);
-                    int age = Integer.parseInt(parts.get(2));
-                    String spec = parts.get(3);
-                    double fee = Double.parseDouble(parts.get(4));
-                    h.doctors.add(new Doctor(id, name, age, spec, fee));
-                } catch (NumberFormatException ignored) {}
-            }
-        } catch (FileNotFoundException ignored) {}
-
-        // Patients
-        try (Scanner sc = new Scanner(new File("patients.csv"))) {
-            if (sc.hasNextLine()) sc.nextLine();
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                if (line.trim().isEmpty()) continue;
-                List<String> parts = parseCsvLine(line);
-                if (parts.size() < 6) continue;
-                try {
-                    int id = Integer.parseInt(parts.get(0));
-                    String name = parts.get(1);
-                    int age = Integer.parseInt(parts.get(2));
-                    String disease = parts.get(3);
-                    boolean testReq = Boolean.parseBoolean(parts.get(4));
-                    String prescription = parts.get(5);
-                    Patient p = new Patient(id, name, age, disease);
-                    p.setTestRequired(testReq);
-                    p.setPrescription(prescription);
-                    h.patients.add(p);
-                } catch (NumberFormatException ignored) {}
-            }
-        } catch (FileNotFoundException ignored) {}
-
-        // Staff
-        try (Scanner sc = new Scanner(new File("staff.csv"))) {
-            if (sc.hasNextLine()) sc.nextLine();
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                if (line.trim().isEmpty()) continue;
-                List<String> parts = parseCsvLine(line);
-                if (parts.size() < 6) continue;
-                try {
-                    int id = Integer.parseInt(parts.get(0));
-                    String name = parts.get(1);
-                    int age = Integer.parseInt(parts.get(2));
-                    String dept = parts.get(3);
-                    String pos = parts.get(4);
-                    double sal = Double.parseDouble(parts.get(5));
-                    h.staffMembers.add(new Staff(id, name, age, dept, pos, sal));
-                } catch (NumberFormatException ignored) {}
+        // Sessions still running after the server gives up on them find the
+        // journal closed, so their changes fail instead of being lost
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (!server.isTerminated()) {
+                System.out.println("❌ Some sessions did not end in time; their further changes will not be saved.");
             }
-        } catch (FileNotFoundException ignored) {}
-
-        // Appointments
-        try (Scanner sc = new Scanner(new File("appointments.csv"))) {
-            if (sc.hasNextLine()) sc.nextLine();
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                if (line.trim().isEmpty()) continue;
-                List<String> parts = parseCsvLine(line);
-                if (parts.size() < 4) continue;
-                try {
-                    int docId = Integer.parseInt(parts.get(0));
-                    int patId = Integer.parseInt(parts.get(1));
-                    String date = parts.get(2);
-                    boolean paid = Boolean.parseBoolean(parts.get(3));
-                    
-                    Doctor d = null;
-                    Patient p = null;
-                    for (Doctor dd : h.doctors) if (dd.getId() == docId) { d = dd; break; }
-                    for (Patient pp : h.patients) if (pp.getId() == patId) { p = pp; break; }
-                    if (d != null && p != null) {
-                        Appointment ap = new Appointment(d, p, date);
-                        ap.setPaid(paid);
-                        h.appointments.add(ap);
-                    }
-                } catch (NumberFormatException ignored) {}
-            }
-        } catch (FileNotFoundException ignored) {}
-
-        // If no staff were loaded, add sample staff (keeps behaviour similar to original)
-        if (h.staffMembers.isEmpty()) {
-            h.staffMembers.add(new Staff(h.staffCounter++, "John Smith", 35, "Reception", "Receptionist", 35000));
-            h.staffMembers.add(new Staff(h.staffCounter++, "Sarah Wilson", 42, "Nursing", "Head Nurse", 55000));
-            h.staffMembers.add(new Staff(h.staffCounter++, "Mike Johnson", 28, "Maintenance", "Technician", 40000));
-        }
-
-        // Reset counters based on loaded data to avoid ID duplication
-        h.doctorCounter = h.doctors.isEmpty() ? h.doctorCounter : h.doctors.stream().mapToInt(Doctor::getId).max().getAsInt() + 1;
-        h.patientCounter = h.patients.isEmpty() ? h.patientCounter : h.patients.stream().mapToInt(Patient::getId).max().getAsInt() + 1;
-        h.staffCounter = h.staffMembers.isEmpty() ? h.staffCounter : h.staffMembers.stream().mapToInt(Staff::getId).max().getAsInt() + 1;
-
-        return h;
+            hospital.close();
+        }));
+        System.out.println("Serving sessions on localhost:" + server.getPort() + " (Ctrl+C to stop)");
+        server.serve();
     }
 
-    // Getters
-    public List<Doctor> getDoctors() { return doctors; }
-    public List<Patient> getPatients() { return patients; }
-    public List<Staff> getStaffMembers() { return staffMembers; }
-    public List<Appointment> getAppointments() { return appointments; }
-}
-
-// ===================
-// Main Program
-// ===================
-public class HospitalSystem {
-    public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
-        Hospital hospital = Hospital.loadData();
+    // Login followed by the menu for the user's role
+    // Login options 00-03, as named in the prompts
+    private static final String[] LOGIN_KINDS = { "admin", "user", "doctor", "staff" };
 
+    static void runSession(Hospital hospital, Scanner sc) {
         System.out.println("=== HOSPITAL MANAGEMENT SYSTEM (CSV MODE) ===");
         System.out.println("Login Options:");
         System.out.println("00 - Admin Login");
         System.out.println("01 - User Login");
         System.out.println("02 - Doctor Login");
         System.out.println("03 - Staff Login");
+        System.out.println("04 - Resume Session");
         System.out.print("Enter login option: ");
 
         String loginOption = sc.nextLine();
 
-        User loggedIn = null;
-
-        if (loginOption.equals("00")) {
-            System.out.print("Enter admin username: ");
-            String adminUser = sc.nextLine();
-            System.out.print("Enter admin password: ");
-            String adminPass = sc.nextLine();
-            loggedIn = hospital.login(adminUser, adminPass);
-        } else if (loginOption.equals("01")) {
-            System.out.print("Enter user username: ");
-            String userUser = sc.nextLine();
-            System.out.print("Enter user password: ");
-            String userPass = sc.nextLine();
-            loggedIn = hospital.login(userUser, userPass);
-        } else if (loginOption.equals("02")) {
-            System.out.print("Enter doctor username: ");
-            String doctorUser = sc.nextLine();
-            System.out.print("Enter doctor password: ");
-            String doctorPass = sc.nextLine();
-            loggedIn = hospital.login(doctorUser, doctorPass);
-        } else if (loginOption.equals("03")) {
-            System.out.print("Enter staff username: ");
-            String staffUser = sc.nextLine();
-            System.out.print("Enter staff password: ");
-            String staffPass = sc.nextLine();
-            loggedIn = hospital.login(staffUser, staffPass);
-        } else {
-            System.out.println("Invalid login option!");
-            sc.close();
-            return;
-        }
+        User loggedIn;
 
-        if (loggedIn == null) {
-            System.out.println("Invalid login credentials!");
-            sc.close();
-            return;
+        if (loginOption.equals("04")) {
+            System.out.print("Enter session token: ");
+            loggedIn = hospital.resumeSession(sc.nextLine());
+            if (loggedIn == null) {
+                System.out.println("Unknown or expired session!");
+                return;
+            }
+        } else {
+            int option = Arrays.asList("00", "01", "02", "03").indexOf(loginOption);
+            if (option < 0) {
+                System.out.println("Invalid login option!");
+                return;
+            }
+            String kind = LOGIN_KINDS[option];
+            System.out.print("Enter " + kind + " username: ");
+            String username = sc.nextLine();
+            System.out.print("Enter " + kind + " password: ");
+            String password = sc.nextLine();
+            loggedIn = hospital.login(username, password);
+
+            if (loggedIn == null) {
+                System.out.println("Invalid login credentials!");
+                return;
+            }
+            System.out.println("Session token: " + hospital.openSession(loggedIn) +
+                    " (log in with option 04 for the next " + Hospital.SESSION_TTL_MINUTES + " minutes)");
         }
 
         System.out.println("Login successful! Role: " + loggedIn.getRole());
@@ -649,8 +144,6 @@ public class HospitalSystem {
             default:
                 System.out.println("Unknown role!");
         }
-
-        sc.close();
     }
 
     private static void adminMenu(Hospital hospital, Scanner sc) {
@@ -664,7 +157,17 @@ public class HospitalSystem {
             System.out.println("6. Show Doctors");
             System.out.println("7. Show Staff");
             System.out.println("8. Show Appointments");
-            System.out.println("9. Save and Exit");
+            System.out.println("9. Checkpoint Status");
+            System.out.println("10. Export CSV");
+            System.out.println("11. Bulk Import");
+            System.out.println("12. Export Report");
+            System.out.println("13. Appointments by Date Range");
+            System.out.println("14. Upcoming Unpaid Appointments");
+            System.out.println("15. Billing Summary");
+            System.out.println("16. Find Free Slot");
+            System.out.println("17. Stats");
+            System.out.println("18. Filter Patients");
+            System.out.println("19. Save and Exit");
             System.out.print("Enter choice: ");
 
             String input = sc.nextLine();
@@ -714,6 +217,7 @@ public class HospitalSystem {
                     break;
                 }
                 case 4: {
+                    // Choices for the prompts, shown whole rather than paged
                     hospital.showDoctors();
                     System.out.print("Enter Doctor ID: ");
                     int dId = readInt(sc);
@@ -723,22 +227,80 @@ public class HospitalSystem {
                     sc.nextLine(); // consume newline if needed
                     System.out.print("Enter appointment date (dd/mm/yyyy): ");
                     String date = sc.nextLine();
-                    hospital.scheduleAppointment(dId, pId, date);
+                    System.out.print("Enter time (HH:mm, blank for the first free slot): ");
+                    String time = sc.nextLine();
+                    hospital.scheduleAppointment(dId, pId, date, time);
                     break;
                 }
                 case 5:
-                    hospital.showPatients();
+                    showPaged(hospital, Hospital.Listing.PATIENTS, sc);
                     break;
                 case 6:
-                    hospital.showDoctors();
+                    showPaged(hospital, Hospital.Listing.DOCTORS, sc);
                     break;
                 case 7:
-                    hospital.showStaff();
+                    showPaged(hospital, Hospital.Listing.STAFF, sc);
                     break;
                 case 8:
-                    hospital.showAppointments();
+                    showPaged(hospital, Hospital.Listing.APPOINTMENTS, sc);
                     break;
                 case 9:
+                    hospital.showCheckpointStatus();
+                    break;
+                case 10:
+                    hospital.exportCsv();
+                    break;
+                case 11: {
+                    System.out.print("Import patients, doctors or staff? ");
+                    String kind = sc.nextLine();
+                    System.out.print("Enter CSV file path: ");
+                    String file = sc.nextLine();
+                    BulkImporter.importFile(hospital, kind, file);
+                    break;
+                }
+                case 12: {
+                    System.out.print("Report on doctors, patients, staff or appointments? ");
+                    String which = sc.nextLine().trim();
+                    Hospital.Listing listing = null;
+                    for (Hospital.Listing l : Hospital.Listing.values()) {
+                        if (l.name().equalsIgnoreCase(which)) listing = l;
+                    }
+                    if (listing == null) {
+                        System.out.println("Invalid choice!");
+                        break;
+                    }
+                    System.out.print("Enter report file path: ");
+                    hospital.exportListing(listing, sc.nextLine().trim());
+                    break;
+                }
+                case 13: {
+                    int from = readDay(sc, "Enter first date (dd/mm/yyyy): ");
+                    if (from == Dates.UNKNOWN) break;
+                    int to = readDay(sc, "Enter last date (dd/mm/yyyy): ");
+                    if (to == Dates.UNKNOWN) break;
+                    IntList found = hospital.getAppointmentsBetween(from, to);
+                    String title = "APPOINTMENTS " + Dates.format(from) + " TO " + Dates.format(to);
+                    showPaged((offset, limit) -> hospital.showAppointments(title, found, offset, limit), sc);
+                    break;
+                }
+                case 14: {
+                    IntList unpaid = hospital.getUnpaidFrom(Dates.today());
+                    showPaged((offset, limit) -> hospital.showAppointments("UPCOMING UNPAID APPOINTMENTS", unpaid, offset, limit), sc);
+                    break;
+                }
+                case 15:
+                    hospital.showBillingSummary();
+                    break;
+                case 16:
+                    findFreeSlot(hospital, sc);
+                    break;
+                case 17:
+                    hospital.showStats();
+                    break;
+                case 18:
+                    filterPatients(hospital, sc);
+                    break;
+                case 19:
                     hospital.saveData();
                     System.out.println("Exiting...");
                     return;
@@ -755,7 +317,9 @@ public class HospitalSystem {
             System.out.println("2. Show All Doctors");
             System.out.println("3. Show Appointment Fees");
             System.out.println("4. Show Staff");
-            System.out.println("5. Save and Exit");
+            System.out.println("5. Today's Schedule");
+            System.out.println("6. Billing Summary");
+            System.out.println("7. Save and Exit");
             System.out.print("Enter choice: ");
 
             String input = sc.nextLine();
@@ -765,18 +329,24 @@ public class HospitalSystem {
 
             switch (choice) {
                 case 1:
-                    hospital.showAppointments();
+                    showPaged(hospital, Hospital.Listing.APPOINTMENTS, sc);
                     break;
                 case 2:
-                    hospital.showDoctors();
+                    showPaged(hospital, Hospital.Listing.DOCTORS, sc);
                     break;
                 case 3:
                     hospital.showAppointmentFees();
                     break;
                 case 4:
-                    hospital.showStaff();
+                    showPaged(hospital, Hospital.Listing.STAFF, sc);
                     break;
                 case 5:
+                    hospital.showSchedule(Dates.today(), 0);
+                    break;
+                case 6:
+                    hospital.showBillingSummary();
+                    break;
+                case 7:
                     hospital.saveData();
                     System.out.println("Exiting...");
                     return;
@@ -791,8 +361,7 @@ public class HospitalSystem {
         System.out.print("Enter your Doctor ID: ");
         int doctorId = readInt(sc);
         sc.nextLine();
-        Doctor currentDoctor = null;
-        for (Doctor d : hospital.getDoctors()) if (d.getId() == doctorId) { currentDoctor = d; break; }
+        Doctor currentDoctor = hospital.findDoctor(doctorId);
 
         if (currentDoctor == null) {
             System.out.println("Invalid Doctor ID!");
@@ -808,7 +377,8 @@ public class HospitalSystem {
             System.out.println("3. Mark Test Required");
             System.out.println("4. Write Prescription");
             System.out.println("5. Take Appointment Fee");
-            System.out.println("6. Save and Exit");
+            System.out.println("6. Today's Schedule");
+            System.out.println("7. Save and Exit");
             System.out.print("Enter choice: ");
 
             String input = sc.nextLine();
@@ -818,15 +388,14 @@ public class HospitalSystem {
 
             switch (choice) {
                 case 1:
-                    hospital.showDoctorPatients(doctorId);
+                    showPaged((offset, limit) -> hospital.showDoctorPatients(doctorId, offset, limit), sc);
                     break;
                 case 2: {
-                    hospital.showDoctorPatients(doctorId);
+                    hospital.showDoctorPatients(doctorId, 0, 0);
                     System.out.print("Enter Patient ID to select: ");
                     int patientId = readInt(sc);
                     sc.nextLine();
-                    Patient selectedPatient = null;
-                    for (Patient p : hospital.getPatients()) if (p.getId() == patientId) { selectedPatient = p; break; }
+                    Patient selectedPatient = hospital.findPatient(patientId);
                     if (selectedPatient != null) {
                         System.out.println("Selected patient: " + selectedPatient.getName());
                     } else {
@@ -835,7 +404,7 @@ public class HospitalSystem {
                     break;
                 }
                 case 3: {
-                    hospital.showDoctorPatients(doctorId);
+                    hospital.showDoctorPatients(doctorId, 0, 0);
                     System.out.print("Enter Patient ID: ");
                     int patientId = readInt(sc);
                     sc.nextLine();
@@ -845,7 +414,7 @@ public class HospitalSystem {
                     break;
                 }
                 case 4: {
-                    hospital.showDoctorPatients(doctorId);
+                    hospital.showDoctorPatients(doctorId, 0, 0);
                     System.out.print("Enter Patient ID: ");
                     int patientId = readInt(sc);
                     sc.nextLine();
@@ -856,12 +425,17 @@ public class HospitalSystem {
                 }
                 case 5: {
                     List<Appointment> appointments = hospital.getAppointments();
+                    IntList mine = hospital.getDoctorAppointments(doctorId);
                     System.out.println("\n=== APPOINTMENTS FOR FEE COLLECTION ===");
-                    for (int i = 0; i < appointments.size(); i++) {
+                    FeeLedger.Totals owed = hospital.getLedger().getDoctor(doctorId);
+                    System.out.println("Outstanding: $" + FeeLedger.format(owed.outstandingCents) +
+                            " (" + owed.outstandingCount + " appointments)");
+                    for (int k = 0; k < mine.size(); k++) {
+                        int i = mine.get(k);
                         Appointment app = appointments.get(i);
-                        if (app.getDoctor().getId() == doctorId && !app.isPaid()) {
+                        if (!app.isPaid()) {
                             System.out.println(i + ". " + app.getPatient().getName() +
-                                    " | Date: " + app.getDate() +
+                                    " | Date: " + app.getDateAndTime() +
                                     " | Fee: $" + app.getFee());
                         }
                     }
@@ -872,6 +446,9 @@ public class HospitalSystem {
                     break;
                 }
                 case 6:
+                    hospital.showSchedule(Dates.today(), doctorId);
+                    break;
+                case 7:
                     hospital.saveData();
                     System.out.println("Exiting...");
                     return;
@@ -889,7 +466,10 @@ public class HospitalSystem {
             System.out.println("3. Show Doctors");
             System.out.println("4. Show Patients");
             System.out.println("5. Show Appointments");
-            System.out.println("6. Save and Exit");
+            System.out.println("6. Show Departments");
+            System.out.println("7. Find Patient by Name");
+            System.out.println("8. Find Doctor by Name");
+            System.out.println("9. Save and Exit");
             System.out.print("Enter choice: ");
 
             String input = sc.nextLine();
@@ -899,23 +479,34 @@ public class HospitalSystem {
 
             switch (choice) {
                 case 1:
-                    hospital.showAllStaff();
+                    showPaged(hospital, Hospital.Listing.STAFF, sc);
                     break;
                 case 2:
                     System.out.print("Enter department to search: ");
                     String department = sc.nextLine();
-                    hospital.searchStaffByDepartment(department);
+                    showPaged((offset, limit) -> hospital.searchStaffByDepartment(department, offset, limit), sc);
                     break;
                 case 3:
-                    hospital.showDoctors();
+                    showPaged(hospital, Hospital.Listing.DOCTORS, sc);
                     break;
                 case 4:
-                    hospital.showPatients();
+                    showPaged(hospital, Hospital.Listing.PATIENTS, sc);
                     break;
                 case 5:
-                    hospital.showAppointments();
+                    showPaged(hospital, Hospital.Listing.APPOINTMENTS, sc);
                     break;
                 case 6:
+                    hospital.showDepartments();
+                    break;
+                case 7:
+                    System.out.print("Enter name or part of it: ");
+                    hospital.showPatientSearch(sc.nextLine());
+                    break;
+                case 8:
+                    System.out.print("Enter name or part of it: ");
+                    hospital.showDoctorSearch(sc.nextLine());
+                    break;
+                case 9:
                     hospital.saveData();
                     System.out.println("Exiting...");
                     return;
@@ -925,6 +516,103 @@ public class HospitalSystem {
         }
     }
 
+    // Prints one page of a listing and returns the next offset, or -1
+    private interface Pager {
+        int show(int offset, int limit);
+    }
+
+    private static void showPaged(Hospital hospital, Hospital.Listing listing, Scanner sc) {
+        showPaged((offset, limit) -> hospital.showListing(listing, offset, limit), sc);
+    }
+
+    // Shows a listing a page at a time, asking before each further page
+    private static void showPaged(Pager pager, Scanner sc) {
+        int offset = 0;
+        while ((offset = pager.show(offset, Hospital.PAGE_SIZE)) >= 0) {
+            System.out.print("Press Enter for more, or q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) return;
+        }
+    }
+
+    // Asks for an age range, diseases and test flag, each optional, and
+    // pages through the patients matching all of them
+    private static void filterPatients(Hospital hospital, Scanner sc) {
+        PatientFilter filter = null;
+        System.out.print("Minimum age (blank for any): ");
+        String min = sc.nextLine().trim();
+        System.out.print("Maximum age (blank for any): ");
+        String max = sc.nextLine().trim();
+        if (!min.isEmpty() || !max.isEmpty()) {
+            try {
+                filter = PatientFilter.age(min.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(min),
+                        max.isEmpty() ? PatientFilter.MAX : Integer.parseInt(max));
+            } catch (NumberFormatException e) {
+                System.out.println("❌ Invalid age!");
+                return;
+            }
+        }
+        System.out.print("Diseases, comma separated (blank for any): ");
+        PatientFilter diseases = null;
+        for (String d : sc.nextLine().split(",")) {
+            if (d.trim().isEmpty()) continue;
+            diseases = diseases == null ? PatientFilter.disease(d) : diseases.or(PatientFilter.disease(d));
+        }
+        if (diseases != null) filter = and(filter, diseases);
+        System.out.print("Needs a test? (y/n, blank for either): ");
+        String test = sc.nextLine().trim();
+        if (test.equalsIgnoreCase("y")) filter = and(filter, PatientFilter.testRequired(true));
+        else if (test.equalsIgnoreCase("n")) filter = and(filter, PatientFilter.testRequired(false));
+
+        Hospital.PatientCursor matches = hospital.findPatientPages(filter != null ? filter : PatientFilter.all());
+        System.out.println(matches.total() + " patient(s) match.");
+        showPaged((offset, limit) -> hospital.showPatients(matches, offset, limit), sc);
+    }
+
+    // filter and condition, or just condition if there is no filter yet
+    private static PatientFilter and(PatientFilter filter, PatientFilter condition) {
+        return filter == null ? condition : filter.and(condition);
+    }
+
+    // Finds the earliest free slot for a specialization and offers to book it
+    private static void findFreeSlot(Hospital hospital, Scanner sc) {
+        System.out.print("Enter specialization: ");
+        String spec = sc.nextLine();
+        System.out.print("Search from date (dd/mm/yyyy, blank for now): ");
+        String from = sc.nextLine().trim();
+        int day, slot = 0;
+        if (from.isEmpty()) {
+            LocalTime now = LocalTime.now();
+            day = Dates.today();
+            slot = (now.getHour() * 60 + now.getMinute() + SlotBook.SLOT_MINUTES - 1) / SlotBook.SLOT_MINUTES;
+        } else {
+            day = Dates.parse(from);
+            if (day == Dates.UNKNOWN) {
+                System.out.println("Invalid date! Use dd/mm/yyyy or yyyy-mm-dd.");
+                return;
+            }
+        }
+        Hospital.FreeSlot free = hospital.findFreeSlot(spec, day, slot);
+        if (free == null) {
+            System.out.println("❌ No free slot with a " + spec.trim() + " doctor in the next " +
+                    Hospital.SLOT_SEARCH_DAYS + " days!");
+            return;
+        }
+        String date = Dates.format(free.day), time = SlotBook.formatTime(free.slot);
+        System.out.println("Earliest free slot: Dr. " + free.doctor.getName() + " (ID " + free.doctor.getId() +
+                ") on " + date + " at " + time);
+        System.out.print("Enter Patient ID to book it (0 to skip): ");
+        int pId = readInt(sc);
+        if (pId != 0) hospital.scheduleAppointment(free.doctor.getId(), pId, date, time);
+    }
+
+    // Reads a date; prints a hint and returns Dates.UNKNOWN if it is not valid
+    private static int readDay(Scanner sc, String prompt) {
+        System.out.print(prompt);
+        int day = Dates.parse(sc.nextLine());
+        if (day == Dates.UNKNOWN) System.out.println("Invalid date! Use dd/mm/yyyy or yyyy-mm-dd.");
+        return day;
+    }
+
     private static int readInt(Scanner sc) {
         while (true) {
             String s = sc.nextLine().trim();
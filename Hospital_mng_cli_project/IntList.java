@@ -0,0 +1,46 @@
+import java.util.Arrays;
+
+// ===================
+// IntList - growable int array
+// ===================
+// Holds positions into the appointments list for the secondary indexes,
+// four bytes per entry instead of a boxed Integer.
+//
+// Readers take no lock and may run alongside one writer: an entry is
+// stored before the volatile size that makes it visible, and readers
+// read the size before the array.
+class IntList {
+    static final IntList EMPTY = new IntList(0);
+
+    private int[] data;
+    private volatile int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        data = new int[capacity];
+    }
+
+    public void add(int value) {
+        int n = size;
+        if (n == data.length) data = Arrays.copyOf(data, Math.max(4, n << 1));
+        data[n] = value;
+        size = n + 1;
+    }
+
+    public int get(int i) {
+        int n = size;
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + n);
+        return data[i];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public int[] toArray() {
+        int n = size;
+        return Arrays.copyOf(data, n);
+    }
+}
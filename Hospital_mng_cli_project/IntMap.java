@@ -0,0 +1,117 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// ===================
+// IntMap - int keyed hash map
+// ===================
+// Open addressing with linear probing on primitive int keys, so looking up
+// a record by its ID never boxes an Integer. A slot is free when its value
+// is null, which is why null values are not allowed.
+//
+// Lookups take no lock and may run alongside one writer at a time: a slot's
+// key is written before its value is published, and a resize builds a new
+// table that replaces the old one in a single volatile write. Callers must
+// make sure writers do not overlap.
+class IntMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final int resizeAt;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            resizeAt = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+
+    public IntMap() {
+        this(16);
+    }
+
+    public IntMap(int expectedSize) {
+        table = new Table(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR)));
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+        return Math.max(capacity, 16);
+    }
+
+    // Spreads sequential IDs across the table (fibonacci hashing)
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            Object v = VALUES.getAcquire(t.values, i);
+            if (v == null) return null;
+            if (t.keys[i] == key) return (V) v;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // Returns the previous value for key, or null
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException("IntMap does not allow null values");
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            Object v = t.values[i];
+            if (v == null) {
+                t.keys[i] = key;
+                VALUES.setRelease(t.values, i, value);
+                if (++size > t.resizeAt) resize(t, t.keys.length << 1);
+                return null;
+            }
+            if (t.keys[i] == key) {
+                VALUES.setRelease(t.values, i, value);
+                return (V) v;
+            }
+        }
+    }
+
+    // Keeps the existing value, matching a first-match linear scan
+    public V putIfAbsent(int key, V value) {
+        V existing = get(key);
+        if (existing != null) return existing;
+        put(key, value);
+        return null;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        table = new Table(table.keys.length);
+        size = 0;
+    }
+
+    private void resize(Table old, int capacity) {
+        Table t = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.values.length; j++) {
+            if (old.values[j] == null) continue;
+            int i = slot(old.keys[j], mask);
+            while (t.values[i] != null) i = (i + 1) & mask;
+            t.keys[i] = old.keys[j];
+            t.values[i] = old.values[j];
+        }
+        table = t;
+    }
+}
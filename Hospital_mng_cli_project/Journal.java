@@ -0,0 +1,106 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// ===================
+// Journal - append-only record log
+// ===================
+// One CSV record per line, appended to the end of the file. Records are
+// buffered in memory, written out by flush() and forced to disk by sync().
+// The owner decides what a record means and replays the file on startup;
+// a record cut short by a crash is dropped when the journal is reopened.
+class Journal implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // A lone surrogate is written as '?', as CsvWriter does, so a record is
+    // never left half-encoded
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long size;
+
+    public Journal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = completeLength();
+        if (size < channel.size()) channel.truncate(size);
+        channel.position(size);
+    }
+
+    // Length of the journal up to the end of its last complete record. A
+    // crash can cut the last record short; records are CSV, so a newline
+    // only ends a record outside quotes.
+    private long completeLength() throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] b = block.array();
+        boolean inQuotes = false;
+        long base = 0, complete = 0;
+        while (true) {
+            block.clear();
+            int n = channel.read(block, base);
+            if (n <= 0) return complete;
+            for (int i = 0; i < n; i++) {
+                if (b[i] == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b[i] == '\n' && !inQuotes) {
+                    complete = base + i + 1;
+                }
+            }
+            base += n;
+        }
+    }
+
+    // Bytes in the journal, including records not yet flushed
+    public long size() { return size + buffer.position(); }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    // Appends record followed by a newline
+    public void append(CharSequence record) throws IOException {
+        CharBuffer in = CharBuffer.wrap(record);
+        encoder.reset();
+        while (true) {
+            CoderResult r = in.hasRemaining() ? encoder.encode(in, buffer, true) : CoderResult.UNDERFLOW;
+            if (r.isOverflow()) {
+                writeBuffer();
+                continue;
+            }
+            if (!buffer.hasRemaining()) writeBuffer();
+            buffer.put((byte) '\n');
+            return;
+        }
+    }
+
+    // Hands buffered records to the operating system
+    public void flush() throws IOException {
+        if (buffer.position() > 0) writeBuffer();
+    }
+
+    // Flushes and forces the journal to disk
+    public void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) size += channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
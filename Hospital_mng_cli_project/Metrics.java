@@ -0,0 +1,150 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// ===================
+// Metrics - call counts, errors and latency histograms per operation
+// ===================
+// An operation is timed by taking start() before it and passing that to
+// end() after it, with whether it succeeded. Counters are LongAdders and
+// the histogram is an array of atomic counts, so threads recording at the
+// same time do not wait for each other.
+//
+// The histogram has eight buckets per power of two of nanoseconds, which
+// keeps any latency from a nanosecond to a century within an eighth of
+// its true value in 496 longs.
+//
+// With -Dhospital.metrics=false, start() and end() do nothing; ENABLED is
+// a constant, so that costs a test per call at most. When enabled, each
+// operation is also registered as an MXBean (see OperationMXBean).
+class Metrics {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("hospital.metrics", "true"));
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private static final List<Operation> OPERATIONS = new CopyOnWriteArrayList<>();
+
+    private Metrics() {}
+
+    // The operation with this name, made and registered on first use
+    static synchronized Operation operation(String name) {
+        for (Operation op : OPERATIONS) {
+            if (op.name.equals(name)) return op;
+        }
+        Operation op = new Operation(name, false);
+        OPERATIONS.add(op);
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(op,
+                        new ObjectName("hospital:type=Operation,name=" + ObjectName.quote(name)));
+            } catch (JMException | RuntimeException e) {
+                System.out.println("❌ Could not register metrics for " + name + ": " + e.getMessage());
+            }
+        }
+        return op;
+    }
+
+    // An operation outside the registry and JMX that records even with
+    // metrics off, for tools that time calls of their own
+    static Operation detached(String name) {
+        return new Operation(name, true);
+    }
+
+    // Every operation, in the order they were made
+    static List<Operation> operations() { return OPERATIONS; }
+
+    // Timestamp to pass to Operation.end
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls in bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    static final class Operation implements OperationMXBean {
+        private final String name;
+        private final boolean always;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Operation(String name, boolean always) {
+            this.name = name;
+            this.always = always;
+        }
+
+        // Records one call that began at start (from Metrics.start, or
+        // System.nanoTime for a detached operation)
+        void end(long start, boolean ok) {
+            if (ENABLED || always) record(System.nanoTime() - start, ok);
+        }
+
+        private void record(long nanos, boolean ok) {
+            count.increment();
+            if (!ok) errors.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(bucket(nanos));
+        }
+
+        // Latency in nanoseconds that p percent of calls took at most
+        long percentileNanos(double p) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += counts[i] = histogram.get(i);
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * p / 100));
+            for (int i = 0; i < BUCKETS; i++) {
+                rank -= counts[i];
+                if (rank <= 0) return Math.min(upperBound(i), maxNanos.get());
+            }
+            return maxNanos.get();
+        }
+
+        @Override public String getName() { return name; }
+        @Override public long getCount() { return count.sum(); }
+        @Override public long getErrors() { return errors.sum(); }
+
+        @Override
+        public double getMeanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e3 / n;
+        }
+
+        @Override public double getP50Micros() { return percentileNanos(50) / 1e3; }
+        @Override public double getP90Micros() { return percentileNanos(90) / 1e3; }
+        @Override public double getP99Micros() { return percentileNanos(99) / 1e3; }
+        @Override public double getMaxMicros() { return maxNanos.get() / 1e3; }
+
+        // Calls recorded while resetting may be partly kept
+        @Override
+        public void reset() {
+            count.reset();
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===================
+// NameIndex - prefix and typo-tolerant search over names
+// ===================
+// A name is split into words, folded to lower case without accents. Each
+// distinct word gets a posting list of the refs (row numbers, added in
+// increasing order) whose name holds it; the names themselves are not
+// kept. A query word matches a word that equals it (score 3), starts with
+// it (2) or, unless it is a number, is within one edit of it, two from six
+// letters on (1). A name must match every query word and scores the sum
+// of its best matches. Results come best score first, then in the order
+// they were added.
+//
+// Prefixes are found in a sorted array of the distinct words and near
+// misses through the trigrams words share with the query, so both cost in
+// proportion to the distinct words rather than the names. The postings of
+// the matching words are then combined in bitmaps over the refs.
+//
+// Adding a name only appends to postings. The sorted array and trigrams
+// are brought up to date by catchUp, in bulk after a load and otherwise
+// by the next search; until the array is merged again, words added since
+// are checked one by one.
+//
+// One thread adds at a time (the caller's lock); any thread may search.
+class NameIndex {
+    private static final int EXACT = 3, PREFIX = 2, FUZZY = 1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> words = new AppendOnlyList<>();
+    private final List<IntList> postings = new AppendOnlyList<>();
+    // Word IDs by packed trigram (see trigrams) for words below indexed
+    private final IntMap<IntList> wordsByTrigram = new IntMap<>();
+    private volatile int indexed;
+    // Word IDs in word order, for a prefix of the words below indexed;
+    // published after indexed, so readers read it first
+    private volatile int[] order = new int[0];
+    // One more than the largest ref added
+    private volatile int refs;
+
+    // Indexes name under ref, which must not be below any ref added before
+    public void add(int ref, String name) {
+        for (String word : words(name)) {
+            IntList list = postings.get(id(word));
+            int n = list.size();
+            if (n == 0 || list.get(n - 1) != ref) list.add(ref);
+        }
+        if (ref >= refs) refs = ref + 1;
+    }
+
+    private int id(String word) {
+        Integer id = ids.get(word);
+        if (id != null) return id;
+        int w = words.size();
+        words.add(word);
+        postings.add(new IntList(2));
+        ids.put(word, w);
+        return w;
+    }
+
+    public int wordCount() { return words.size(); }
+
+    // Indexes the trigrams of the words added since the last call, and
+    // merges them into the sorted array once there are enough of them
+    public void catchUp() {
+        if (indexed == words.size()) return;
+        synchronized (this) {
+            int from = indexed, to = words.size();
+            for (int w = from; w < to; w++) {
+                String word = words.get(w);
+                if (isNumber(word)) continue;
+                for (int g : trigrams(word)) {
+                    IntList list = wordsByTrigram.get(g);
+                    if (list == null) wordsByTrigram.put(g, list = new IntList(2));
+                    list.add(w);
+                }
+            }
+            indexed = to;
+            int[] old = order;
+            if (to - old.length > Math.max(256, old.length / 64)) order = merge(old, to);
+        }
+    }
+
+    // old with the words from old.length up to to merged in
+    private int[] merge(int[] old, int to) {
+        String[] added = new String[to - old.length];
+        for (int i = 0; i < added.length; i++) added[i] = words.get(old.length + i);
+        Arrays.parallelSort(added);
+        int[] merged = new int[to];
+        int i = 0, j = 0, k = 0;
+        while (i < old.length || j < added.length) {
+            if (j == added.length || (i < old.length && words.get(old[i]).compareTo(added[j]) < 0)) {
+                merged[k++] = old[i++];
+            } else {
+                merged[k++] = ids.get(added[j++]);
+            }
+        }
+        return merged;
+    }
+
+    // Refs of the best matches for query, at most limit of them
+    public IntList search(String query, int limit) {
+        catchUp();
+        List<String> terms = words(query);
+        int n = refs;
+        if (terms.isEmpty() || limit <= 0 || n == 0) return IntList.EMPTY;
+
+        // Per term, a bitmap of the refs that match it at each score
+        long[][][] bits = new long[terms.size()][][];
+        long[] all = null;
+        for (int t = 0; t < terms.size(); t++) {
+            bits[t] = match(terms.get(t), n);
+            long[] any = null;
+            int tiers = 0;
+            for (long[] tier : bits[t]) {
+                if (tier == null) continue;
+                if (tiers++ == 0) {
+                    any = tier;
+                    continue;
+                }
+                if (tiers == 2) any = any.clone();
+                for (int i = 0; i < any.length; i++) any[i] |= tier[i];
+            }
+            if (any == null) return IntList.EMPTY;
+            if (all == null) {
+                // A lone tier is still needed for scoring, so AND into a copy
+                all = tiers == 1 && terms.size() > 1 ? any.clone() : any;
+            } else {
+                for (int i = 0; i < all.length; i++) all[i] &= any[i];
+            }
+        }
+
+        // Bucket by score, keeping the first limit refs of each; a full
+        // bucket at the best possible score ends the scan
+        int best = EXACT * terms.size();
+        IntList[] buckets = new IntList[best + 1];
+        scan:
+        for (int i = 0; i < all.length; i++) {
+            for (long word = all[i]; word != 0; word &= word - 1) {
+                int ref = (i << 6) + Long.numberOfTrailingZeros(word);
+                int score = 0;
+                for (long[][] term : bits) score += score(term, i, word & -word);
+                IntList bucket = buckets[score];
+                if (bucket == null) bucket = buckets[score] = new IntList();
+                if (bucket.size() < limit) bucket.add(ref);
+                if (score == best && bucket.size() == limit) break scan;
+            }
+        }
+        IntList result = new IntList();
+        for (int s = best; s > 0 && result.size() < limit; s--) {
+            IntList bucket = buckets[s];
+            for (int k = 0; bucket != null && k < bucket.size() && result.size() < limit; k++) result.add(bucket.get(k));
+        }
+        return result;
+    }
+
+    private static int score(long[][] term, int i, long bit) {
+        for (int s = EXACT; s >= FUZZY; s--) {
+            long[] tier = term[s];
+            if (tier != null && (tier[i] & bit) != 0) return s;
+        }
+        return 0;
+    }
+
+    // Bitmaps of the refs below n whose words match term, indexed by score
+    private long[][] match(String term, int n) {
+        long[][] tiers = new long[EXACT + 1][];
+        Integer exact = ids.get(term);
+        if (exact != null) mark(tiers, EXACT, exact, n);
+
+        int[] order = this.order;
+        int known = indexed;
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (words.get(order[mid]).compareTo(term) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < order.length && words.get(order[i]).startsWith(term); i++) mark(tiers, PREFIX, order[i], n);
+        for (int w = order.length; w < known; w++) {
+            String word = words.get(w);
+            if (word.length() > term.length() && word.startsWith(term)) mark(tiers, PREFIX, w, n);
+        }
+
+        int edits = term.length() < 3 || isNumber(term) ? 0 : term.length() < 6 ? 1 : 2;
+        if (edits == 0) return tiers;
+        int[] grams = trigrams(term);
+        // An edit changes at most four trigrams
+        int needed = Math.max(1, grams.length - 4 * edits);
+        int[] shared = new int[known];
+        for (int g : grams) {
+            IntList candidates = wordsByTrigram.get(g);
+            if (candidates == null) continue;
+            for (int k = 0; k < candidates.size(); k++) {
+                int w = candidates.get(k);
+                if (w < shared.length && ++shared[w] == needed) {
+                    String word = words.get(w);
+                    if (!word.startsWith(term) && withinEdits(term, word, edits)) mark(tiers, FUZZY, w, n);
+                }
+            }
+        }
+        return tiers;
+    }
+
+    private void mark(long[][] tiers, int score, int word, int n) {
+        long[] tier = tiers[score];
+        if (tier == null) tier = tiers[score] = new long[(n + 63) >>> 6];
+        IntList list = postings.get(word);
+        for (int k = 0, size = list.size(); k < size; k++) {
+            int ref = list.get(k);
+            if (ref >= n) break;
+            tier[ref >>> 6] |= 1L << ref;
+        }
+    }
+
+    // Whether a can be turned into b with at most max insertions,
+    // deletions, substitutions or swaps of neighbouring letters
+    static boolean withinEdits(String a, String b, int max) {
+        int la = a.length(), lb = b.length();
+        if (Math.abs(la - lb) > max) return false;
+        int[] prev2 = new int[lb + 1], prev = new int[lb + 1], cur = new int[lb + 1];
+        for (int j = 0; j <= lb; j++) prev[j] = j;
+        for (int i = 1; i <= la; i++) {
+            cur[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= lb; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return false;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[lb] <= max;
+    }
+
+    // Distinct trigrams of the word padded with two blanks either side,
+    // ten bits a letter; others are hashed into the values above that,
+    // where a collision only costs an extra candidate
+    private static int[] trigrams(String word) {
+        int n = word.length() + 2;
+        int[] grams = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int a = padded(word, i - 2), b = padded(word, i - 1), c = padded(word, i);
+            int g = (a | b | c) < 1024 ? a << 20 | b << 10 | c : ((a * 31 + b) * 31 + c) | 1 << 30;
+            boolean seen = false;
+            for (int k = 0; k < count && !seen; k++) seen = grams[k] == g;
+            if (!seen) grams[count++] = g;
+        }
+        return count == n ? grams : Arrays.copyOf(grams, count);
+    }
+
+    // Numbers (a name may hold one) only match whole or by prefix, so
+    // their trigrams are not indexed
+    private static boolean isNumber(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static int padded(String word, int i) {
+        return i >= 0 && i < word.length() ? word.charAt(i) : ' ';
+    }
+
+    // Words of text in lower case without accents; apostrophes are
+    // dropped (O'Brien is obrien) and anything else that is not a letter
+    // or digit separates words
+    static List<String> words(String text) {
+        List<String> result = new ArrayList<>(2);
+        if (text == null) return result;
+        StringBuilder word = new StringBuilder();
+        boolean ascii = true;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                ascii &= c < 128;
+            } else if (c != '\'' && c != '’' && word.length() > 0) {
+                String w = word.toString();
+                if (!ascii) w = Normalizer.normalize(w, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+                result.add(w);
+                word.setLength(0);
+                ascii = true;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+// ===================
+// OperationMXBean - JMX view of one timed operation
+// ===================
+// Registered by Metrics as hospital:type=Operation,name=<operation>.
+// Latencies are in microseconds; percentiles are the upper bound of the
+// histogram bucket they fall in, so within an eighth of the true value.
+public interface OperationMXBean {
+    String getName();
+    long getCount();
+    long getErrors();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getMaxMicros();
+    void reset();
+}
@@ -0,0 +1,41 @@
+// ===================
+// Patient class
+// ===================
+// A view of one row of a PatientStore. Views are made on demand and hold
+// no data of their own, so two views of the same row are equal and see
+// each other's changes.
+class Patient extends Person {
+    private final PatientStore store;
+    private final int row;
+
+    Patient(PatientStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    PatientStore getStore() { return store; }
+    int getRow() { return row; }
+
+    public int getId() { return store.getId(row); }
+    public String getName() { return store.getName(row); }
+    public int getAge() { return store.getAge(row); }
+    public String getDisease() { return store.getDisease(row); }
+    public boolean isTestRequired() { return store.isTestRequired(row); }
+    public void setTestRequired(boolean testRequired) { store.setTestRequired(row, testRequired); }
+    public String getPrescription() { return store.getPrescription(row); }
+    public void setPrescription(String prescription) { store.setPrescription(row, prescription); }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Patient && ((Patient) o).store == store && ((Patient) o).row == row;
+    }
+
+    @Override
+    public int hashCode() { return row; }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Disease: %-15s | Test: %-5s | Prescription: %-20s",
+                getId(), getName(), getAge(), getDisease(), isTestRequired() ? "Yes" : "No", getPrescription());
+    }
+}
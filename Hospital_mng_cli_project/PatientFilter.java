@@ -0,0 +1,159 @@
+import java.util.*;
+
+// ===================
+// PatientFilter - conditions on age, disease and test flag
+// ===================
+// Made with age, disease, testRequired and all, and combined with and/or,
+// e.g. age(60, MAX).and(disease("flu")).and(testRequired(true)).
+//
+// A PatientStore evaluates a filter a chunk of 65536 rows at a time (see
+// RowBitmap): each condition fills a bitmap of the chunk from its index,
+// and and/or combine the bitmaps word by word, so no list of rows is
+// made along the way. Ages are indexed by decade; a range that ends
+// inside one checks the ages of that decade's rows. The test condition
+// reads the store's test flags directly, so it always agrees with
+// setTestRequired.
+abstract class PatientFilter {
+    static final int MAX = Integer.MAX_VALUE;
+
+    // Bitmaps for the nodes of a filter to combine into, one per depth
+    static final class Scratch {
+        private long[][] buffers = new long[4][];
+
+        long[] get(int depth) {
+            if (depth >= buffers.length) buffers = Arrays.copyOf(buffers, depth + 1);
+            long[] b = buffers[depth];
+            return b != null ? b : (buffers[depth] = new long[RowBitmap.CHUNK_WORDS]);
+        }
+    }
+
+    // Fills dst with the rows of chunk c that match, returning false only
+    // if none do. Rows at or above n may be set; the caller clears them.
+    abstract boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth);
+
+    static PatientFilter all() {
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                Arrays.fill(dst, -1L);
+                return true;
+            }
+
+            @Override
+            public String toString() { return "anyone"; }
+        };
+    }
+
+    // Aged min to max, both included
+    static PatientFilter age(int min, int max) {
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                Arrays.fill(dst, 0);
+                boolean any = false;
+                for (int b = 0; b < PatientStore.AGE_BUCKETS; b++) {
+                    int low = PatientStore.ageBucketMin(b), high = PatientStore.ageBucketMax(b);
+                    if (high < min || low > max) continue;
+                    if (min <= low && high <= max) {
+                        any |= store.orAgeChunk(b, c, dst);
+                        continue;
+                    }
+                    long[] edge = scratch.get(depth);
+                    Arrays.fill(edge, 0);
+                    if (!store.orAgeChunk(b, c, edge)) continue;
+                    int base = c << RowBitmap.CHUNK_BITS;
+                    for (int i = 0; i < edge.length; i++) {
+                        for (long word = edge[i]; word != 0; word &= word - 1) {
+                            int row = base + (i << 6) + Long.numberOfTrailingZeros(word);
+                            if (row >= n) break;
+                            int age = store.getAge(row);
+                            if (age >= min && age <= max) {
+                                dst[i] |= word & -word;
+                                any = true;
+                            }
+                        }
+                    }
+                }
+                return any;
+            }
+
+            @Override
+            public String toString() {
+                return max == MAX ? "age " + min + "+" : min == Integer.MIN_VALUE ? "age up to " + max : "age " + min + "-" + max;
+            }
+        };
+    }
+
+    // With this disease, ignoring case and surrounding blanks
+    static PatientFilter disease(String disease) {
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                Arrays.fill(dst, 0);
+                int key = store.findDiseaseKey(disease);
+                return key != SymbolTable.NONE && store.orDiseaseChunk(key, c, dst);
+            }
+
+            @Override
+            public String toString() { return "disease " + disease.trim(); }
+        };
+    }
+
+    static PatientFilter testRequired(boolean required) {
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                store.copyTestChunk(c, dst);
+                if (!required) {
+                    for (int i = 0; i < dst.length; i++) dst[i] = ~dst[i];
+                }
+                return true;
+            }
+
+            @Override
+            public String toString() { return required ? "needs a test" : "needs no test"; }
+        };
+    }
+
+    PatientFilter and(PatientFilter other) {
+        PatientFilter first = this;
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                if (!first.fill(store, c, n, dst, scratch, depth + 1)) return false;
+                long[] rest = scratch.get(depth);
+                if (!other.fill(store, c, n, rest, scratch, depth + 1)) {
+                    Arrays.fill(dst, 0);
+                    return false;
+                }
+                long any = 0;
+                for (int i = 0; i < dst.length; i++) any |= dst[i] &= rest[i];
+                return any != 0;
+            }
+
+            @Override
+            public String toString() { return first + " and " + other; }
+        };
+    }
+
+    PatientFilter or(PatientFilter other) {
+        PatientFilter first = this;
+        return new PatientFilter() {
+            @Override
+            boolean fill(PatientStore store, int c, int n, long[] dst, Scratch scratch, int depth) {
+                boolean any = first.fill(store, c, n, dst, scratch, depth + 1);
+                long[] rest = scratch.get(depth);
+                if (!other.fill(store, c, n, rest, scratch, depth + 1)) return any;
+                if (!any) {
+                    System.arraycopy(rest, 0, dst, 0, dst.length);
+                } else {
+                    for (int i = 0; i < dst.length; i++) dst[i] |= rest[i];
+                }
+                return true;
+            }
+
+            @Override
+            public String toString() { return "(" + first + " or " + other + ")"; }
+        };
+    }
+}
@@ -0,0 +1,442 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+// ===================
+// PatientStore - the patient table as columns
+// ===================
+// One array per field instead of one object per patient: IDs and ages in
+// int arrays, the test flags packed 64 to a long, names as UTF-8 bytes in
+// one array with an end offset per row, and diseases as int codes into the
+// Hospital's SymbolTable. Prescriptions are free text that changes, so
+// they stay strings in a plain column, null when there is none: a text
+// dropped by an update is garbage like any other. That is about 35 bytes
+// a patient for typical data, plus some 40 for a short prescription,
+// against roughly 150 for a Patient object with its own strings, and the
+// collector traces a few arrays and the prescriptions instead of millions
+// of objects.
+//
+// Rows are appended and never removed. Readers take no lock and may run
+// alongside one writer, as with IntList: a row is written before the
+// volatile size that makes it visible. The two fields that change after
+// insert, the test flag and the prescription, are written and read with
+// release/acquire. Callers must make sure writers do not overlap.
+//
+// Rows are also indexed by disease and by age decade in RowBitmaps, for
+// PatientFilter; count and rows evaluate a filter without listing rows.
+class PatientStore {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle STRINGS = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private int[] ids;
+    private int[] ages;
+    private long[] testBits;
+    private byte[] nameBytes = new byte[64];
+    private int[] nameEnds;
+    private int[] diseases;
+    private String[] prescriptions;
+    private final SymbolTable diseaseNames;
+    private volatile int size;
+
+    // Most IDs are handed out in order from 1, so row i usually holds ID
+    // i + 1 and needs no index entry. Rows where that does not hold are
+    // indexed here.
+    private final IntMap<Integer> irregularIds = new IntMap<>();
+
+    // Indexes for PatientFilter: rows by disease key and by age decade.
+    // The test flags need none, as testBits is already a bitmap of them.
+    static final int AGE_BUCKETS = 13;
+    private final IntMap<RowBitmap> rowsByDisease = new IntMap<>();
+    private final RowBitmap[] rowsByAge = new RowBitmap[AGE_BUCKETS];
+
+    // Diseases are encoded into diseaseNames, the Hospital's table
+    public PatientStore(SymbolTable diseaseNames) {
+        this(diseaseNames, 16);
+    }
+
+    public PatientStore(SymbolTable diseaseNames, int capacity) {
+        this.diseaseNames = diseaseNames;
+        int n = Math.max(capacity, 16);
+        ids = new int[n];
+        ages = new int[n];
+        testBits = new long[(n + 63) >>> 6];
+        nameEnds = new int[n];
+        diseases = new int[n];
+        prescriptions = new String[n];
+        for (int b = 0; b < AGE_BUCKETS; b++) rowsByAge[b] = new RowBitmap();
+    }
+
+    // Appends a patient and returns its row
+    public int add(int id, String name, int age, String disease, boolean testRequired, String prescription) {
+        return add(id, name, age, diseaseNames.code(disease), testRequired, prescription);
+    }
+
+    // Appends row i of rows
+    public int add(Rows rows, int i) {
+        return add(rows.ids.get(i), rows.names.get(i), rows.ages.get(i), rows.diseases.get(i),
+                rows.testRequired.get(i), rows.prescriptions.get(i));
+    }
+
+    private int add(int id, String name, int age, int disease, boolean testRequired, String prescription) {
+        int row = size;
+        if (row == ids.length) grow(row << 1);
+        byte[] utf8 = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+        int start = row == 0 ? 0 : nameEnds[row - 1];
+        if (start + utf8.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length << 1, start + utf8.length));
+        }
+        System.arraycopy(utf8, 0, nameBytes, start, utf8.length);
+        nameEnds[row] = start + utf8.length;
+        ids[row] = id;
+        ages[row] = age;
+        diseases[row] = disease;
+        prescriptions[row] = orNull(prescription);
+        if (testRequired) testBits[row >>> 6] |= 1L << row;
+        index(row);
+        size = row + 1;
+        return row;
+    }
+
+    // Adds row to the ID and filter indexes
+    private void index(int row) {
+        int id = ids[row];
+        if (id != row + 1 && find(id, row) < 0) irregularIds.put(id, row);
+        int key = diseaseNames.key(diseases[row]);
+        RowBitmap withDisease = rowsByDisease.get(key);
+        if (withDisease == null) rowsByDisease.put(key, withDisease = new RowBitmap());
+        withDisease.add(row);
+        rowsByAge[ageBucket(ages[row])].add(row);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        testBits = Arrays.copyOf(testBits, (capacity + 63) >>> 6);
+        nameEnds = Arrays.copyOf(nameEnds, capacity);
+        diseases = Arrays.copyOf(diseases, capacity);
+        prescriptions = Arrays.copyOf(prescriptions, capacity);
+    }
+
+    // Row of the first patient added with this ID, or -1
+    public int find(int id) {
+        return find(id, size);
+    }
+
+    private int find(int id, int n) {
+        Integer row = irregularIds.get(id);
+        if (row != null) return row;
+        int dense = id - 1;
+        return dense >= 0 && dense < n && ids[dense] == id ? dense : -1;
+    }
+
+    public int size() { return size; }
+
+    public int maxId() {
+        int n = size, max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) max = Math.max(max, ids[i]);
+        return max;
+    }
+
+    public int getId(int row) { return ids[row]; }
+    public int getAge(int row) { return ages[row]; }
+
+    public String getName(int row) {
+        int start = row == 0 ? 0 : nameEnds[row - 1];
+        return new String(nameBytes, start, nameEnds[row] - start, StandardCharsets.UTF_8);
+    }
+
+    public String getDisease(int row) { return diseaseNames.text(diseases[row]); }
+
+    // Key of a disease spelt like this one, or SymbolTable.NONE
+    public int findDiseaseKey(String disease) { return diseaseNames.findKey(disease); }
+
+    public boolean isTestRequired(int row) {
+        return ((long) LONGS.getAcquire(testBits, row >>> 6) & (1L << row)) != 0;
+    }
+
+    public void setTestRequired(int row, boolean testRequired) {
+        long word = (long) LONGS.getAcquire(testBits, row >>> 6);
+        word = testRequired ? word | (1L << row) : word & ~(1L << row);
+        LONGS.setRelease(testBits, row >>> 6, word);
+    }
+
+    public String getPrescription(int row) {
+        String prescription = (String) STRINGS.getAcquire(prescriptions, row);
+        return prescription == null ? "" : prescription;
+    }
+
+    public void setPrescription(int row, String prescription) {
+        STRINGS.setRelease(prescriptions, row, orNull(prescription));
+    }
+
+    private static String orNull(String prescription) {
+        return prescription == null || prescription.isEmpty() ? null : prescription;
+    }
+
+    public Patient view(int row) { return new Patient(this, row); }
+
+    // Decade of age, with everything under 10 in the first bucket and
+    // everything from 120 in the last
+    static int ageBucket(int age) {
+        return age < 10 ? 0 : Math.min(age / 10, AGE_BUCKETS - 1);
+    }
+
+    static int ageBucketMin(int bucket) { return bucket == 0 ? Integer.MIN_VALUE : bucket * 10; }
+    static int ageBucketMax(int bucket) { return bucket == AGE_BUCKETS - 1 ? Integer.MAX_VALUE : bucket * 10 + 9; }
+
+    // ORs the rows of chunk c (see RowBitmap) whose disease has this key,
+    // or whose age is in this bucket, into dst; false if there are none
+    boolean orDiseaseChunk(int key, int c, long[] dst) {
+        RowBitmap rows = rowsByDisease.get(key);
+        return rows != null && rows.orChunk(c, dst);
+    }
+
+    boolean orAgeChunk(int bucket, int c, long[] dst) {
+        return rowsByAge[bucket].orChunk(c, dst);
+    }
+
+    // Copies the test flags of chunk c into dst
+    void copyTestChunk(int c, long[] dst) {
+        long[] bits = testBits;
+        int from = c * RowBitmap.CHUNK_WORDS;
+        for (int i = 0; i < RowBitmap.CHUNK_WORDS; i++) {
+            dst[i] = from + i < bits.length ? (long) LONGS.getAcquire(bits, from + i) : 0;
+        }
+    }
+
+    // Number of rows that match filter
+    public int count(PatientFilter filter) {
+        int n = size;
+        long[] bits = new long[RowBitmap.CHUNK_WORDS];
+        PatientFilter.Scratch scratch = new PatientFilter.Scratch();
+        int total = 0;
+        for (int c = 0, chunks = chunks(n); c < chunks; c++) {
+            if (!filter.fill(this, c, n, bits, scratch, 0)) continue;
+            mask(bits, c, n);
+            for (long word : bits) total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    // Rows that match filter in increasing order, found a chunk at a time
+    // as the stream is consumed; rows added meanwhile are not included
+    public IntStream rows(PatientFilter filter) {
+        return rows(filter, 0);
+    }
+
+    // As rows(filter), starting at row first; the chunks before it are
+    // not looked at
+    public IntStream rows(PatientFilter filter, int first) {
+        int n = size;
+        return StreamSupport.intStream(new Matches(filter, n, first, first >>> RowBitmap.CHUNK_BITS, chunks(n)), false);
+    }
+
+    private static int chunks(int n) {
+        return (n + (1 << RowBitmap.CHUNK_BITS) - 1) >>> RowBitmap.CHUNK_BITS;
+    }
+
+    // Clears the bits of chunk c for rows at or above n
+    private static void mask(long[] bits, int c, int n) {
+        int end = n - (c << RowBitmap.CHUNK_BITS);
+        if (end >= bits.length << 6) return;
+        bits[end >>> 6] &= (1L << end) - 1;
+        Arrays.fill(bits, (end >>> 6) + 1, bits.length, 0);
+    }
+
+    // Clears the bits of the first start rows of a chunk
+    private static void maskBelow(long[] bits, int start) {
+        Arrays.fill(bits, 0, start >>> 6, 0);
+        bits[start >>> 6] &= -1L << start;
+    }
+
+    // Chunks [chunk, end) of the rows from first on that match a filter.
+    // Splits hand out the first half of the chunks left, before this one
+    // has started on them, so parallel streams keep the order.
+    private final class Matches implements Spliterator.OfInt {
+        private final PatientFilter filter;
+        private final int n;
+        private final int first;
+        private final long[] bits = new long[RowBitmap.CHUNK_WORDS];
+        private final PatientFilter.Scratch scratch = new PatientFilter.Scratch();
+        private int chunk, end, base;
+        private int word = RowBitmap.CHUNK_WORDS;
+        private long current;
+
+        Matches(PatientFilter filter, int n, int first, int chunk, int end) {
+            this.filter = filter;
+            this.n = n;
+            this.first = first;
+            this.chunk = chunk;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (current == 0) {
+                if (++word >= RowBitmap.CHUNK_WORDS) {
+                    if (!nextChunk()) {
+                        word = RowBitmap.CHUNK_WORDS;
+                        return false;
+                    }
+                    word = 0;
+                }
+                current = bits[word];
+            }
+            int row = base + (word << 6) + Long.numberOfTrailingZeros(current);
+            current &= current - 1;
+            action.accept(row);
+            return true;
+        }
+
+        private boolean nextChunk() {
+            while (chunk < end) {
+                int c = chunk++;
+                if (filter.fill(PatientStore.this, c, n, bits, scratch, 0)) {
+                    mask(bits, c, n);
+                    base = c << RowBitmap.CHUNK_BITS;
+                    if (base < first) maskBelow(bits, first - base);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            if (current != 0 || word < RowBitmap.CHUNK_WORDS - 1 || end - chunk < 2) return null;
+            int mid = (chunk + end) >>> 1;
+            Matches prefix = new Matches(filter, n, first, chunk, mid);
+            chunk = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.min(n, (long) (end - chunk) << RowBitmap.CHUNK_BITS);
+        }
+
+        @Override
+        public int characteristics() { return ORDERED | DISTINCT | NONNULL; }
+    }
+
+    // The first n rows as a list of views
+    public List<Patient> asList(int n) {
+        return new ViewList(n);
+    }
+
+    // Every row, including rows added later
+    public List<Patient> asList() {
+        return new ViewList(-1);
+    }
+
+    private final class ViewList extends AbstractList<Patient> implements RandomAccess {
+        private final int fixedSize;
+
+        ViewList(int fixedSize) { this.fixedSize = fixedSize; }
+
+        @Override
+        public Patient get(int i) {
+            int n = size();
+            if (i < 0 || i >= n) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + n);
+            return view(i);
+        }
+
+        @Override
+        public int size() { return fixedSize >= 0 ? fixedSize : PatientStore.this.size; }
+    }
+
+    // Rows column by column, as BinarySnapshot writes and reads them.
+    // Prescriptions are null where there is none, and diseases are codes
+    // of the store's table.
+    static final class Columns {
+        final int size;
+        final int[] ids;
+        final int[] ages;
+        final long[] testBits;
+        final int[] nameEnds;
+        byte[] nameBytes;
+        final int[] diseases;
+        final String[] prescriptions;
+
+        private Columns(int size, int[] ids, int[] ages, long[] testBits, int[] nameEnds, byte[] nameBytes,
+                        int[] diseases, String[] prescriptions) {
+            this.size = size;
+            this.ids = ids;
+            this.ages = ages;
+            this.testBits = testBits;
+            this.nameEnds = nameEnds;
+            this.nameBytes = nameBytes;
+            this.diseases = diseases;
+            this.prescriptions = prescriptions;
+        }
+    }
+
+    // The rows stored so far, sharing the store's arrays rather than
+    // copying them. Take it with the writer's lock held; only test flags
+    // and prescriptions may change afterwards.
+    Columns columns() {
+        int n = size;
+        return new Columns(n, ids, ages, testBits, nameEnds, nameBytes, diseases, prescriptions);
+    }
+
+    // Fills columns with room for n rows, the name bytes included, and
+    // codes of the store's table for the diseases
+    interface ColumnReader {
+        void read(Columns columns) throws IOException;
+    }
+
+    // Loads n rows into this store, which must be empty. reader fills the
+    // store's own arrays when they have room, as after presizing, and
+    // new ones otherwise; the rows are indexed once it is done.
+    void load(int n, ColumnReader reader) throws IOException {
+        if (size != 0) throw new IllegalStateException("patient store is not empty");
+        int capacity = Math.max(n, 16);
+        Columns c = ids.length >= n
+                ? new Columns(n, ids, ages, testBits, nameEnds, nameBytes, diseases, prescriptions)
+                : new Columns(n, new int[capacity], new int[capacity], new long[(capacity + 63) >>> 6],
+                        new int[capacity], nameBytes, new int[capacity], new String[capacity]);
+        reader.read(c);
+        ids = c.ids;
+        ages = c.ages;
+        testBits = c.testBits;
+        nameEnds = c.nameEnds;
+        nameBytes = c.nameBytes;
+        diseases = c.diseases;
+        prescriptions = c.prescriptions;
+        for (int row = 0; row < n; row++) index(row);
+        size = n;
+    }
+
+    // Patients parsed from a file, not stored yet. Diseases are encoded
+    // as they are parsed, into the table of the store the rows go to, so
+    // only the distinct texts outlive the parse.
+    static final class Rows {
+        private final SymbolTable diseaseNames;
+        final IntList ids = new IntList(1024);
+        final List<String> names = new ArrayList<>(1024);
+        final IntList ages = new IntList(1024);
+        final IntList diseases = new IntList(1024);
+        final BitSet testRequired = new BitSet();
+        final List<String> prescriptions = new ArrayList<>(1024);
+
+        Rows(SymbolTable diseaseNames) {
+            this.diseaseNames = diseaseNames;
+        }
+
+        void add(int id, String name, int age, String disease, boolean test, String prescription) {
+            if (test) testRequired.set(ids.size());
+            ids.add(id);
+            names.add(name);
+            ages.add(age);
+            diseases.add(diseaseNames.code(disease));
+            prescriptions.add(prescription == null ? "" : prescription);
+        }
+
+        int size() { return ids.size(); }
+    }
+}
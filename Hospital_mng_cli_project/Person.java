@@ -0,0 +1,10 @@
+// ===================
+// Base Person class
+// ===================
+// Doctors and staff keep their own fields; a Patient reads them from the
+// PatientStore columns
+abstract class Person {
+    public abstract int getId();
+    public abstract String getName();
+    public abstract int getAge();
+}
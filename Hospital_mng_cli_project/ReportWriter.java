@@ -0,0 +1,145 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// ===================
+// ReportWriter - buffered text for listings
+// ===================
+// Rows are formatted into one reusable StringBuilder that is handed on in
+// large chunks: to a PrintStream (System.out, which may be a session) or,
+// UTF-8 encoded, to a channel such as a report file. The padding helpers
+// give the same text as the String.format specifiers named on them, so a
+// row built here reads exactly like the entity's toString(). Numbers are
+// formatted by hand unless the default locale uses other digits or
+// separators, in which case String.format is used.
+class ReportWriter implements Closeable, Flushable {
+    private static final int CHUNK = 32 * 1024;
+    private static final String NEWLINE = System.lineSeparator();
+    private static final boolean PLAIN_NUMBERS = plainNumbers(Locale.getDefault(Locale.Category.FORMAT));
+
+    private final PrintStream out;
+    private final WritableByteChannel channel;
+    private final StringBuilder sb = new StringBuilder(CHUNK + 1024);
+    private CharsetEncoder encoder;
+    private ByteBuffer bytes;
+
+    public ReportWriter(PrintStream out) {
+        this.out = out;
+        this.channel = null;
+    }
+
+    public ReportWriter(WritableByteChannel channel) {
+        this.out = null;
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.bytes = ByteBuffer.allocate(4 * CHUNK);
+    }
+
+    private static boolean plainNumbers(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        return symbols.getZeroDigit() == '0' && symbols.getDecimalSeparator() == '.' && symbols.getMinusSign() == '-';
+    }
+
+    public ReportWriter text(CharSequence s) throws IOException {
+        sb.append(s);
+        return check();
+    }
+
+    // %-<width>s
+    public ReportWriter left(Object value, int width) throws IOException {
+        String s = String.valueOf(value);
+        sb.append(s);
+        pad(width - s.length());
+        return check();
+    }
+
+    // %-<width>d
+    public ReportWriter left(long value, int width) throws IOException {
+        if (!PLAIN_NUMBERS) return left(String.format("%d", value), width);
+        int start = sb.length();
+        sb.append(value);
+        pad(width - (sb.length() - start));
+        return check();
+    }
+
+    // %-<width>.2f
+    public ReportWriter leftFixed2(double value, int width) throws IOException {
+        double abs = Math.abs(value);
+        long cents = Math.round(abs * 100);
+        if (!PLAIN_NUMBERS || !(abs < 1e15) || cents / 100.0 != abs) {
+            return left(String.format("%.2f", value), width);
+        }
+        int start = sb.length();
+        if (Double.doubleToRawLongBits(value) < 0) sb.append('-');
+        sb.append(cents / 100).append('.');
+        int frac = (int) (cents % 100);
+        sb.append((char) ('0' + frac / 10)).append((char) ('0' + frac % 10));
+        pad(width - (sb.length() - start));
+        return check();
+    }
+
+    private void pad(int n) {
+        for (int i = 0; i < n; i++) sb.append(' ');
+    }
+
+    // Ends the line the way println does
+    public ReportWriter newline() throws IOException {
+        sb.append(NEWLINE);
+        return check();
+    }
+
+    public ReportWriter line(CharSequence s) throws IOException {
+        sb.append(s).append(NEWLINE);
+        return check();
+    }
+
+    private ReportWriter check() throws IOException {
+        if (sb.length() >= CHUNK) drain();
+        return this;
+    }
+
+    private void drain() throws IOException {
+        if (out != null) {
+            out.print(sb);
+        } else {
+            CharBuffer in = CharBuffer.wrap(sb);
+            encoder.reset();
+            while (true) {
+                CoderResult r = encoder.encode(in, bytes, true);
+                if (r.isError()) r.throwException();
+                if (r.isUnderflow()) break;
+                writeBytes();
+            }
+            writeBytes();
+        }
+        sb.setLength(0);
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (sb.length() > 0) drain();
+        if (out != null) out.flush();
+    }
+
+    // Flushes; a channel is closed, a PrintStream is left open
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (channel != null) channel.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// ===================
+// RowBitmap - compressed set of row numbers
+// ===================
+// Rows are split into chunks of 65536 by their high 16 bits. A chunk with
+// few rows keeps their low 16 bits in a sorted char array, two bytes a row;
+// past 4096 rows that would outgrow a plain bitmap of the chunk, so it
+// switches to one (1024 longs, 8 KB). A value held by a handful of rows
+// costs a few bytes, and a common one an eighth of a byte a row.
+//
+// Rows are added in increasing order and never removed, which is how the
+// PatientStore indexes are filled. Queries work a chunk at a time: orChunk
+// ORs a chunk's rows into a bitmap the caller combines with others.
+//
+// Readers take no lock and may run alongside one writer. Arrays are
+// filled before the volatile field that publishes them, an entry is
+// written before the volatile count that makes it visible, and bitmap
+// words are written with release. A reader may see rows added after it
+// started, so it should mask what it reads to the rows it knows about.
+class RowBitmap {
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+    private static final int ARRAY_MAX = 4096;
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final class Chunk {
+        volatile char[] values = new char[4];
+        volatile long[] bits;
+        volatile int count;
+    }
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int cardinality;
+
+    // Adds row, which must be above every row added before
+    public void add(int row) {
+        int c = row >>> CHUNK_BITS;
+        Chunk[] cs = chunks;
+        if (c >= cs.length) {
+            cs = Arrays.copyOf(cs, Math.max(c + 1, cs.length << 1));
+            chunks = cs;
+        }
+        Chunk chunk = cs[c];
+        if (chunk == null) cs[c] = chunk = new Chunk();
+        char low = (char) row;
+        int n = chunk.count;
+        long[] bits = chunk.bits;
+        if (bits == null && n == ARRAY_MAX) {
+            bits = new long[CHUNK_WORDS];
+            char[] values = chunk.values;
+            for (int i = 0; i < n; i++) bits[values[i] >>> 6] |= 1L << values[i];
+            chunk.bits = bits;
+            chunk.values = null;
+        }
+        if (bits != null) {
+            LONGS.setRelease(bits, low >>> 6, (long) LONGS.getAcquire(bits, low >>> 6) | 1L << low);
+        } else {
+            char[] values = chunk.values;
+            if (n == values.length) chunk.values = values = Arrays.copyOf(values, n << 1);
+            values[n] = low;
+        }
+        chunk.count = n + 1;
+        cardinality++;
+    }
+
+    public int cardinality() { return cardinality; }
+
+    // ORs the rows of chunk c into dst, a bitmap of CHUNK_WORDS longs
+    // over that chunk; false if the chunk has none
+    public boolean orChunk(int c, long[] dst) {
+        Chunk[] cs = chunks;
+        Chunk chunk = c < cs.length ? cs[c] : null;
+        if (chunk == null) return false;
+        int n = chunk.count;
+        if (n == 0) return false;
+        // Read before bits: values is cleared only after bits is set
+        char[] values = chunk.values;
+        long[] bits = chunk.bits;
+        if (bits != null) {
+            for (int i = 0; i < CHUNK_WORDS; i++) dst[i] |= (long) LONGS.getAcquire(bits, i);
+        } else {
+            for (int i = 0; i < n; i++) dst[values[i] >>> 6] |= 1L << values[i];
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===================
+// SessionCache - login sessions by token
+// ===================
+// After one password login a client gets a random token it can present
+// instead, which costs a map lookup rather than a password hash. A session
+// expires once it has gone unused for the time to live; every use starts
+// that time again. Expired sessions are dropped when they are looked up
+// and by a sweep that runs, at most once per half TTL, when a session is
+// opened.
+class SessionCache<T> {
+    private static final int TOKEN_BYTES = 18;
+
+    private static final class Session<T> {
+        final T principal;
+        volatile long expires;
+
+        Session(T principal, long expires) {
+            this.principal = principal;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<String, Session<T>> sessions = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder tokens = Base64.getUrlEncoder().withoutPadding();
+    private volatile long nextSweep;
+
+    public SessionCache(long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.nextSweep = System.nanoTime() + ttlNanos / 2;
+    }
+
+    // A new token for principal
+    public String open(T principal) {
+        long now = System.nanoTime();
+        if (now - nextSweep >= 0) {
+            nextSweep = now + ttlNanos / 2;
+            sessions.values().removeIf(s -> now - s.expires >= 0);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = tokens.encodeToString(bytes);
+        sessions.put(token, new Session<>(principal, now + ttlNanos));
+        return token;
+    }
+
+    // The token's principal, or null if it is unknown or expired
+    public T resume(String token) {
+        if (token == null) return null;
+        Session<T> s = sessions.get(token.trim());
+        if (s == null) return null;
+        long now = System.nanoTime();
+        if (now - s.expires >= 0) {
+            sessions.remove(token.trim(), s);
+            return null;
+        }
+        s.expires = now + ttlNanos;
+        return s.principal;
+    }
+
+    public void close(String token) {
+        if (token != null) sessions.remove(token.trim());
+    }
+
+    public int size() { return sessions.size(); }
+}
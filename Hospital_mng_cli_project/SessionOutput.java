@@ -0,0 +1,86 @@
+import java.io.*;
+import java.util.Locale;
+
+// ===================
+// SessionOutput - System.out per thread
+// ===================
+// The menus and Hospital print straight to System.out. In server mode
+// SessionOutput is installed as System.out and forwards everything a thread
+// prints to the stream bound to that thread (its client connection), or to
+// the original console when none is bound. The common print methods
+// forward directly, so sessions do not share a lock; anything else goes
+// through the PrintStream machinery and still ends up in the right place.
+class SessionOutput extends PrintStream {
+    private static final ThreadLocal<PrintStream> CURRENT = new ThreadLocal<>();
+    private static volatile PrintStream console = System.out;
+
+    private SessionOutput() {
+        super(new OutputStream() {
+            @Override
+            public void write(int b) { target().write(b); }
+
+            @Override
+            public void write(byte[] b, int off, int len) { target().write(b, off, len); }
+
+            @Override
+            public void flush() { target().flush(); }
+        }, true);
+    }
+
+    // Replaces System.out, once
+    public static synchronized void install() {
+        if (System.out instanceof SessionOutput) return;
+        console = System.out;
+        System.setOut(new SessionOutput());
+    }
+
+    // Sends what the current thread prints to out, until unbind()
+    public static void bind(PrintStream out) { CURRENT.set(out); }
+
+    public static void unbind() { CURRENT.remove(); }
+
+    private static PrintStream target() {
+        PrintStream out = CURRENT.get();
+        return out != null ? out : console;
+    }
+
+    @Override public void print(String s) { target().print(s); }
+    @Override public void print(Object o) { target().print(o); }
+    @Override public void print(char c) { target().print(c); }
+    @Override public void print(int i) { target().print(i); }
+    @Override public void print(double d) { target().print(d); }
+    @Override public void println() { target().println(); }
+    @Override public void println(String s) { target().println(s); }
+    @Override public void println(Object o) { target().println(o); }
+    @Override public void println(int i) { target().println(i); }
+    @Override public void println(double d) { target().println(d); }
+
+    @Override
+    public PrintStream printf(String format, Object... args) {
+        target().printf(format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args) {
+        target().printf(l, format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        target().format(format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        target().format(l, format, args);
+        return this;
+    }
+
+    @Override public void write(int b) { target().write(b); }
+    @Override public void write(byte[] b, int off, int len) { target().write(b, off, len); }
+    @Override public void flush() { target().flush(); }
+    @Override public boolean checkError() { return target().checkError(); }
+}
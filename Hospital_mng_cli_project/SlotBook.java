@@ -0,0 +1,96 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===================
+// SlotBook - booked time slots per doctor and day
+// ===================
+// A day is split into 48 half-hour slots, and the slots a doctor has booked
+// on one day are the bits of a single long (bit 0 = 00:00, bit 47 = 23:30).
+// Claiming a slot is a compare-and-set on that word, so two sessions
+// booking the same doctor at once cannot both get the slot, and neither
+// waits on a lock to find out. Free slots are found with mask arithmetic
+// on the word rather than by looking at appointments.
+class SlotBook {
+    static final int SLOTS = 48;
+    static final int SLOT_MINUTES = 30;
+    static final int NONE = -1;
+    static final long ALL = (1L << SLOTS) - 1;
+
+    // (doctor ID << 32 | epoch day) -> booked slots
+    private final Map<Long, AtomicLong> days = new ConcurrentHashMap<>();
+
+    private static Long key(int doctorId, int day) {
+        return ((long) doctorId << 32) | (day & 0xFFFFFFFFL);
+    }
+
+    // Books the slot; false if it was already booked
+    public boolean claim(int doctorId, int day, int slot) {
+        long bit = 1L << slot;
+        AtomicLong word = days.computeIfAbsent(key(doctorId, day), k -> new AtomicLong());
+        while (true) {
+            long booked = word.get();
+            if ((booked & bit) != 0) return false;
+            if (word.compareAndSet(booked, booked | bit)) return true;
+        }
+    }
+
+    // Frees a slot claimed by a booking that did not go through
+    public void release(int doctorId, int day, int slot) {
+        AtomicLong word = days.get(key(doctorId, day));
+        if (word != null) word.getAndUpdate(booked -> booked & ~(1L << slot));
+    }
+
+    public boolean isBooked(int doctorId, int day, int slot) {
+        return (booked(doctorId, day) & (1L << slot)) != 0;
+    }
+
+    // Bit mask of the doctor's booked slots that day
+    public long booked(int doctorId, int day) {
+        AtomicLong word = days.get(key(doctorId, day));
+        return word != null ? word.get() : 0;
+    }
+
+    // Lowest slot in allowed that the doctor has free that day, or NONE
+    public int firstFree(int doctorId, int day, long allowed) {
+        long free = ~booked(doctorId, day) & allowed;
+        return free != 0 ? Long.numberOfTrailingZeros(free) : NONE;
+    }
+
+    // Slots from first up to but not including end
+    public static long range(int first, int end) {
+        if (first >= end) return 0;
+        return (ALL >>> (SLOTS - (end - first))) << first;
+    }
+
+    // "9:30" or "09:30" on the hour or half hour -> slot, otherwise NONE
+    public static int parseTime(String text) {
+        if (text == null) return NONE;
+        String t = text.trim();
+        int colon = t.indexOf(':');
+        if (colon < 1 || colon > 2 || t.length() != colon + 3) return NONE;
+        int hours = 0, minutes = 0;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (i == colon) continue;
+            if (c < '0' || c > '9') return NONE;
+            if (i < colon) hours = hours * 10 + c - '0'; else minutes = minutes * 10 + c - '0';
+        }
+        if (hours > 23 || minutes > 59 || minutes % SLOT_MINUTES != 0) return NONE;
+        return hours * (60 / SLOT_MINUTES) + minutes / SLOT_MINUTES;
+    }
+
+    // "HH:mm", or "" for NONE
+    public static String formatTime(int slot) {
+        return slot == NONE ? "" : TIMES[slot];
+    }
+
+    private static final String[] TIMES = new String[SLOTS];
+    static {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int minutes = slot * SLOT_MINUTES;
+            int h = minutes / 60, m = minutes % 60;
+            TIMES[slot] = new String(new char[] { (char) ('0' + h / 10), (char) ('0' + h % 10), ':', (char) ('0' + m / 10), (char) ('0' + m % 10) });
+        }
+    }
+}
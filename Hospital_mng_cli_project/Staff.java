@@ -0,0 +1,39 @@
+// ===================
+// Staff class
+// ===================
+// Department and position are kept as codes in the Hospital's SymbolTable
+class Staff extends Person {
+    private final SymbolTable symbols;
+    private int id;
+    private String name;
+    private int age;
+    private int department;
+    private int position;
+    private double salary;
+
+    public Staff(SymbolTable symbols, int id, String name, int age, String department, String position, double salary) {
+        this.symbols = symbols;
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.department = symbols.code(department);
+        this.position = symbols.code(position);
+        this.salary = salary;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getAge() { return age; }
+
+    public String getDepartment() { return symbols.text(department); }
+    // Equal for departments spelt alike ignoring case and blanks
+    public int getDepartmentKey() { return symbols.key(department); }
+    public String getPosition() { return symbols.text(position); }
+    public double getSalary() { return salary; }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %-3d | Name: %-15s | Age: %-3d | Department: %-15s | Position: %-15s | Salary: $%-8.2f",
+                id, name, age, getDepartment(), getPosition(), salary);
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===================
+// SymbolTable - small int codes for repeated strings
+// ===================
+// Fields such as a disease or a department repeat a few values across
+// many rows. Each distinct text is stored once and the rows keep its code,
+// so a row costs four bytes for the field, and comparing or grouping by it
+// is an int comparison. The text is looked up again only to display it.
+//
+// Every code also has a key: the code of the first text seen that matches
+// it ignoring case and surrounding blanks. Rows whose keys are equal
+// belong to the same department or specialization however they were
+// typed, which is what the indexes and the menus group by. A table made
+// without keys, for free text, skips that and each code is its own key.
+//
+// Each Hospital has one keyed table for its specialization, disease,
+// department and position columns, so its codes live and die with it.
+//
+// Codes are never removed. Looking a text up takes no lock; adding a new
+// one is synchronized, so any thread may encode.
+class SymbolTable {
+    static final int NONE = -1;
+
+    private final boolean keyed;
+    private final List<String> texts = new AppendOnlyList<>();
+    private final IntList keys = new IntList(16);
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> keysByFolded = new ConcurrentHashMap<>();
+
+    public SymbolTable(boolean keyed) {
+        this.keyed = keyed;
+    }
+
+    // Code of text, added if it is new; null is encoded as ""
+    public int code(String text) {
+        String t = text == null ? "" : text;
+        Integer code = codes.get(t);
+        return code != null ? code : add(t);
+    }
+
+    private synchronized int add(String text) {
+        Integer code = codes.get(text);
+        if (code != null) return code;
+        int c = texts.size();
+        // The lists are filled before the maps make the code reachable
+        texts.add(text);
+        if (keyed) {
+            String folded = fold(text);
+            Integer key = keysByFolded.get(folded);
+            keys.add(key != null ? key : c);
+            if (key == null) keysByFolded.put(folded, c);
+        }
+        codes.put(text, c);
+        return c;
+    }
+
+    // Key of any text matching this one ignoring case and surrounding
+    // blanks, or NONE if there is none yet; never adds
+    public int findKey(String text) {
+        Integer key = keyed ? keysByFolded.get(fold(text)) : codes.get(text == null ? "" : text);
+        return key != null ? key : NONE;
+    }
+
+    public String text(int code) { return texts.get(code); }
+    public int key(int code) { return keyed ? keys.get(code) : code; }
+    public int size() { return texts.size(); }
+
+    private static String fold(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
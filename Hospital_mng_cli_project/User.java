@@ -0,0 +1,16 @@
+// ===================
+// User class (Login)
+// ===================
+// Passwords are kept only as hashes, in the Hospital's CredentialStore
+class User {
+    private String username;
+    private String role;
+
+    public User(String username, String role) {
+        this.username = username;
+        this.role = role;
+    }
+
+    public String getUsername() { return username; }
+    public String getRole() { return role; }
+}
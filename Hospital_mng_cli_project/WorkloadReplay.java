@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===================
+// WorkloadReplay - scripted sessions against one Hospital on several threads
+// ===================
+// Loads the Hospital from the working directory, as HospitalSystem does,
+// and has each thread run a script of menu operations over and over until
+// the time is up. Then it prints the throughput and latency percentiles of
+// each step, followed by the Hospital's own operation stats. Everything the
+// Hospital prints while the scripts run is discarded.
+//
+// Changes are journaled into the data like any session's, so replay
+// against a copy, e.g. one made by DataGenerator:
+//
+//   java -Dgen.patients=100000 DataGenerator /tmp/load
+//   cd /tmp/load && java -Dreplay.threads=8 WorkloadReplay path/to/workload.txt
+//
+// Thread t runs script t modulo the number of scripts, so naming a script
+// twice gives it twice the threads. A single thread and no warmup replays
+// one session the way it was written, to reproduce a slow one.
+//
+// Properties:
+//   replay.threads      threads, default the number of cores
+//   replay.time         measured seconds, default 10
+//   replay.warmup       seconds run first and not reported, default 2
+//   replay.iterations   if set, passes over the script per thread instead of a time limit
+//   replay.doctorSkew   Zipf exponent for doctors not named in a step, default 1
+//   replay.patientSkew  Zipf exponent for patients not named in a step, default 0
+//   replay.seed         random seed; thread t uses seed + t, default 1
+//
+// A script has one step per line; blank lines and lines starting with #
+// are skipped. A doctor or patient is a position in the loaded list, drawn
+// with the skews above (so position 1 is the busiest), unless the step
+// gives an ID.
+//
+//   login <user> <password>   password login; refused counts as an error
+//   resume                    resume the session of this thread's last login
+//   think <ms>                pause, not timed
+//   addPatient | addDoctor | addStaff
+//   schedule [doctor [patient]]        first free slot within four weeks
+//   book [doctor [patient]]            a random half hour within four weeks
+//   freeSlot                  earliest free slot of a random specialization
+//   takeFee [doctor]          collect the fee of one of the doctor's appointments
+//   setTest [patient] | prescribe [patient]
+//   doctorPatients [doctor] | todaySchedule [doctor]
+//   searchPatients [patient] | searchDoctors [doctor]   the first word and
+//                             start of the last word of their name
+//   staffByDepartment | billing | save
+//   showDoctors | showPatients | showStaff | showAppointments   first page
+class WorkloadReplay {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    // What a step does; false if it failed
+    private interface Action {
+        boolean run(Session s) throws Exception;
+    }
+
+    private static final class Step {
+        final Action action;
+        final Metrics.Operation timing;     // null for think
+
+        Step(Action action, Metrics.Operation timing) {
+            this.action = action;
+            this.timing = timing;
+        }
+    }
+
+    // State of one replaying thread
+    private static final class Session {
+        final Hospital h;
+        final Random rnd;
+        String token;
+
+        Session(Hospital h, long seed) {
+            this.h = h;
+            this.rnd = new Random(seed);
+        }
+    }
+
+    private static Hospital hospital;
+    private static DataGenerator.Zipf doctorPick, patientPick;
+    // Step timings by name, in the order the scripts first use them
+    private static final Map<String, Metrics.Operation> TIMINGS = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java [-Dreplay.threads=n ...] WorkloadReplay script [script ...]");
+            return;
+        }
+        List<List<Step>> scripts = new ArrayList<>();
+        for (String file : args) {
+            List<Step> script = parse(Paths.get(file));
+            if (script == null) return;
+            scripts.add(script);
+        }
+        int threads = Integer.getInteger("replay.threads", Runtime.getRuntime().availableProcessors());
+        long measureNanos = (long) (Double.parseDouble(System.getProperty("replay.time", "10")) * 1e9);
+        long warmupNanos = (long) (Double.parseDouble(System.getProperty("replay.warmup", "2")) * 1e9);
+        Integer iterations = Integer.getInteger("replay.iterations");
+        long seed = Long.getLong("replay.seed", 1);
+
+        hospital = Hospital.loadData();
+        hospital.startCheckpointer(Long.getLong("hospital.checkpoint.interval", 60),
+                Long.getLong("hospital.checkpoint.maxMillis", 10_000));
+        try {
+            int doctors = hospital.getDoctors().size(), patients = hospital.getPatients().size();
+            if (doctors == 0 || patients == 0) {
+                System.out.println("❌ Nothing to replay against: load some doctors and patients first.");
+                return;
+            }
+            doctorPick = new DataGenerator.Zipf(doctors, Double.parseDouble(System.getProperty("replay.doctorSkew", "1")));
+            patientPick = new DataGenerator.Zipf(patients, Double.parseDouble(System.getProperty("replay.patientSkew", "0")));
+
+            SessionOutput.install();
+            if (warmupNanos > 0) run(scripts, threads, seed, warmupNanos, 0);
+            for (Metrics.Operation op : TIMINGS.values()) op.reset();
+            for (Metrics.Operation op : Metrics.operations()) op.reset();
+
+            long start = System.nanoTime();
+            long passes = run(scripts, threads, seed, measureNanos, iterations == null ? 0 : iterations);
+            report(threads, passes, System.nanoTime() - start);
+        } finally {
+            hospital.close();
+        }
+    }
+
+    // Runs the scripts until nanos have passed, or each thread has made
+    // iterations passes if that is not 0; returns the passes completed in all
+    private static long run(List<List<Step>> scripts, int threads, long seed, long nanos, int iterations) throws Exception {
+        AtomicLong passes = new AtomicLong();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + nanos;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            List<Step> script = scripts.get(t % scripts.size());
+            Session s = new Session(hospital, seed + t);
+            workers[t] = new Thread(() -> {
+                SessionOutput.bind(NULL_OUT);
+                try {
+                    for (int pass = 0; iterations > 0 ? pass < iterations : System.nanoTime() < deadline; pass++) {
+                        int done = 0;
+                        for (Step step : script) {
+                            if (iterations == 0 && System.nanoTime() >= deadline) break;
+                            runStep(step, s, failures);
+                            done++;
+                        }
+                        if (done == script.size()) passes.incrementAndGet();
+                    }
+                } finally {
+                    SessionOutput.unbind();
+                }
+            }, "replay-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        if (!failures.isEmpty()) {
+            System.out.println("❌ " + failures.size() + " step(s) threw, first: " + failures.get(0));
+        }
+        return passes.get();
+    }
+
+    private static void runStep(Step step, Session s, List<Throwable> failures) {
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = step.action.run(s);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            failures.add(e);
+            ok = false;
+        }
+        if (step.timing != null) step.timing.end(start, ok);
+    }
+
+    private static void report(int threads, long passes, long nanos) {
+        double seconds = nanos / 1e9;
+        long steps = 0;
+        System.out.printf(Locale.ROOT, "%nReplayed %d script pass(es) on %d thread(s) in %.2f s%n", passes, threads, seconds);
+        System.out.println("Step                   Calls      Ops/s      Errors   Mean ms   p50 ms    p90 ms    p99 ms    Max ms");
+        System.out.println("--------------------------------------------------------------------------------------------------");
+        for (Metrics.Operation op : TIMINGS.values()) {
+            steps += op.getCount();
+            System.out.printf(Locale.ROOT, "%-21s  %-9d  %-9.1f  %-7d  %-8.3f  %-8.3f  %-8.3f  %-8.3f  %.3f%n", op.getName(),
+                    op.getCount(), op.getCount() / seconds, op.getErrors(), op.getMeanMicros() / 1e3,
+                    op.getP50Micros() / 1e3, op.getP90Micros() / 1e3, op.getP99Micros() / 1e3, op.getMaxMicros() / 1e3);
+        }
+        System.out.printf(Locale.ROOT, "All steps              %-9d  %.1f%n", steps, steps / seconds);
+        hospital.showStats();
+    }
+
+    // ---------------- Scripts ----------------
+    // The steps of a script, or null after printing what is wrong with it
+    private static List<Step> parse(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("❌ Cannot read " + file + ": " + e.getMessage());
+            return null;
+        }
+        List<Step> steps = new ArrayList<>();
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] words = line.split("\\s+");
+            Action action;
+            try {
+                action = action(words);
+            } catch (NumberFormatException e) {
+                action = null;
+            }
+            if (action == null) {
+                System.out.println("❌ " + file + " line " + (n + 1) + ": cannot run \"" + line + "\"");
+                return null;
+            }
+            Metrics.Operation timing = words[0].equals("think") ? null
+                    : TIMINGS.computeIfAbsent(words[0], Metrics::detached);
+            steps.add(new Step(action, timing));
+        }
+        if (steps.isEmpty()) {
+            System.out.println("❌ " + file + " has no steps");
+            return null;
+        }
+        return steps;
+    }
+
+    // The action for a line split into words, or null if there is none
+    private static Action action(String[] w) {
+        int args = w.length - 1;
+        switch (w[0]) {
+            case "login": {
+                if (args != 2) return null;
+                String user = w[1], password = w[2];
+                return s -> {
+                    User u = s.h.login(user, password);
+                    if (u != null) s.token = s.h.openSession(u);
+                    return u != null;
+                };
+            }
+            case "resume":
+                return args == 0 ? s -> s.token != null && s.h.resumeSession(s.token) != null : null;
+            case "think": {
+                if (args != 1) return null;
+                long millis = Long.parseLong(w[1]);
+                return s -> {
+                    Thread.sleep(millis);
+                    return true;
+                };
+            }
+            case "addPatient":
+                return args == 0 ? s -> {
+                    s.h.addPatient("Replay Patient", 1 + s.rnd.nextInt(95), pick(DataGenerator.DISEASES, s));
+                    return true;
+                } : null;
+            case "addDoctor":
+                return args == 0 ? s -> {
+                    s.h.addDoctor("Replay Doctor", 30 + s.rnd.nextInt(35), pick(DataGenerator.SPECIALIZATIONS, s), 50 + s.rnd.nextInt(200));
+                    return true;
+                } : null;
+            case "addStaff":
+                return args == 0 ? s -> {
+                    s.h.addStaff("Replay Staff", 20 + s.rnd.nextInt(45), pick(DataGenerator.DEPARTMENTS, s),
+                            pick(DataGenerator.POSITIONS, s), 25000 + s.rnd.nextInt(50000));
+                    return true;
+                } : null;
+            case "schedule":
+            case "book": {
+                if (args > 2) return null;
+                int doctor = args > 0 ? Integer.parseInt(w[1]) : 0;
+                int patient = args > 1 ? Integer.parseInt(w[2]) : 0;
+                boolean timed = w[0].equals("book");
+                return s -> {
+                    String date = Dates.format(Dates.today() + s.rnd.nextInt(28));
+                    s.h.scheduleAppointment(doctor(doctor, s), patient(patient, s), date, timed ? DataGenerator.randomTime(s.rnd) : "");
+                    return true;
+                };
+            }
+            case "freeSlot":
+                return args == 0 ? s -> s.h.findFreeSlot(pick(DataGenerator.SPECIALIZATIONS, s), Dates.today(), 0) != null : null;
+            case "takeFee": {
+                if (args > 1) return null;
+                int doctor = args > 0 ? Integer.parseInt(w[1]) : 0;
+                return s -> {
+                    IntList mine = s.h.getDoctorAppointments(doctor(doctor, s));
+                    if (mine.isEmpty()) return true;
+                    s.h.takeAppointmentFee(mine.get(s.rnd.nextInt(mine.size())));
+                    return true;
+                };
+            }
+            case "setTest":
+            case "prescribe": {
+                if (args > 1) return null;
+                int patient = args > 0 ? Integer.parseInt(w[1]) : 0;
+                boolean test = w[0].equals("setTest");
+                return s -> {
+                    if (test) s.h.setTestRequired(patient(patient, s), s.rnd.nextBoolean());
+                    else s.h.setPrescription(patient(patient, s), "dose " + s.rnd.nextInt(10) + ", daily");
+                    return true;
+                };
+            }
+            case "doctorPatients":
+            case "todaySchedule": {
+                if (args > 1) return null;
+                int doctor = args > 0 ? Integer.parseInt(w[1]) : 0;
+                boolean patients = w[0].equals("doctorPatients");
+                return s -> {
+                    if (patients) s.h.showDoctorPatients(doctor(doctor, s));
+                    else s.h.showSchedule(Dates.today(), doctor(doctor, s));
+                    return true;
+                };
+            }
+            case "searchPatients":
+            case "searchDoctors": {
+                if (args > 1) return null;
+                int id = args > 0 ? Integer.parseInt(w[1]) : 0;
+                boolean patients = w[0].equals("searchPatients");
+                return s -> {
+                    Person p = patients ? s.h.findPatient(patient(id, s)) : s.h.findDoctor(doctor(id, s));
+                    if (p == null) return false;
+                    String query = typed(p.getName());
+                    return !(patients ? s.h.searchPatients(query, Hospital.SEARCH_LIMIT)
+                            : s.h.searchDoctors(query, Hospital.SEARCH_LIMIT)).isEmpty();
+                };
+            }
+            case "staffByDepartment":
+                return args == 0 ? s -> {
+                    s.h.searchStaffByDepartment(pick(DataGenerator.DEPARTMENTS, s));
+                    return true;
+                } : null;
+            case "billing":
+                return args == 0 ? s -> {
+                    s.h.showBillingSummary();
+                    return true;
+                } : null;
+            case "save":
+                return args == 0 ? s -> {
+                    s.h.saveData();
+                    return true;
+                } : null;
+            case "showDoctors":
+                return args == 0 ? listing(Hospital.Listing.DOCTORS) : null;
+            case "showPatients":
+                return args == 0 ? listing(Hospital.Listing.PATIENTS) : null;
+            case "showStaff":
+                return args == 0 ? listing(Hospital.Listing.STAFF) : null;
+            case "showAppointments":
+                return args == 0 ? listing(Hospital.Listing.APPOINTMENTS) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static Action listing(Hospital.Listing listing) {
+        return s -> {
+            s.h.showListing(listing, 0, Hospital.PAGE_SIZE);
+            return true;
+        };
+    }
+
+    // A name as typed into a search: its first word and the first three
+    // letters of its last
+    private static String typed(String name) {
+        String[] words = name.trim().split("\\s+");
+        String last = words[words.length - 1];
+        return words.length == 1 ? last : words[0] + " " + last.substring(0, Math.min(3, last.length()));
+    }
+
+    private static String pick(String[] values, Session s) {
+        return values[s.rnd.nextInt(values.length)];
+    }
+
+    // id if a step gave one, else the ID at a skewed position in the list
+    private static int doctor(int id, Session s) {
+        return id > 0 ? id : hospital.getDoctors().get(doctorPick.next(s.rnd)).getId();
+    }
+
+    private static int patient(int id, Session s) {
+        return id > 0 ? id : hospital.getPatients().get(patientPick.next(s.rnd)).getId();
+    }
+}